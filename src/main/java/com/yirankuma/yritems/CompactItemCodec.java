@@ -0,0 +1,154 @@
+package com.yirankuma.yritems;
+
+import cn.nukkit.item.Item;
+import cn.nukkit.nbt.tag.CompoundTag;
+import cn.nukkit.nbt.tag.Tag;
+import com.yirankuma.yritems.node.NodeEvaluator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 种子紧凑编码
+ * 物品只保存 {模板名, 模板版本, 生成算法版本, 64 位种子}，完整的名称、Lore、NBT 按需用同一种子重建
+ *
+ * 发送给客户端前展开为完整物品，并把原紧凑 NBT 存在 {@link #EXPANDED_TAG} 中；
+ * 客户端发回的物品据此还原，服务器端的物品 NBT 始终保持紧凑形式
+ *
+ * 因此服务器端读取紧凑物品的名称、Lore 或 YRAttributes 得不到数据，需要先调用 {@link #expand(Item)}
+ */
+public class CompactItemCodec {
+
+    /** 紧凑标签键 */
+    public static final String TAG = "YRSeed";
+    /** 展开后的物品中保存原紧凑 NBT 的键 */
+    public static final String EXPANDED_TAG = "_YRCompact";
+    /** 新生成物品记录的生成算法版本，以后随机算法改变时据此区分新旧物品 */
+    public static final int REVISION = NodeEvaluator.LATEST_REVISION;
+
+    private static final int CACHE_SIZE = 1024;
+
+    private final ItemConfig itemConfig;
+    /** (模板, 版本, 种子) -> 重建的物品 (数量为 1)，按访问顺序淘汰 */
+    private final Map<String, Item> cache = new LinkedHashMap<String, Item>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Item> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    private long hits;
+    private long misses;
+    /** 物品记录的模板版本与当前配置不一致的次数 */
+    private long staleVersions;
+
+    public CompactItemCodec(ItemConfig itemConfig) {
+        this.itemConfig = itemConfig;
+    }
+
+    /**
+     * 构建紧凑标签
+     */
+    public static CompoundTag encode(String templateKey, long templateVersion, long seed) {
+        CompoundTag tag = new CompoundTag();
+        tag.putString("Key", templateKey);
+        tag.putLong("Ver", templateVersion);
+        tag.putInt("Rev", REVISION);
+        tag.putLong("Seed", seed);
+        return tag;
+    }
+
+    /**
+     * 物品是否为紧凑编码
+     */
+    public static boolean isCompact(Item item) {
+        if (item == null || item.getId() == 0 || !item.hasCompoundTag()) return false;
+        CompoundTag nbt = item.getNamedTag();
+        return nbt != null && nbt.contains(TAG) && !nbt.contains(EXPANDED_TAG);
+    }
+
+    /**
+     * 重建紧凑物品的完整数据
+     * 物品上除紧凑标签外的其他 NBT (如之后写入的绑定信息) 覆盖在重建结果之上
+     * @return 重建的物品，不是紧凑物品或模板不存在时返回 null
+     */
+    public Item expand(Item item) {
+        if (!isCompact(item)) return null;
+        CompoundTag nbt = item.getNamedTag();
+        CompoundTag compact = nbt.getCompound(TAG);
+        ItemData data = itemConfig.getItem(compact.getString("Key"));
+        if (data == null) return null;
+
+        long seed = compact.getLong("Seed");
+        String cacheKey = data.getTemplateKey() + '#' + data.getTemplateVersion() + '#' + seed;
+        Item rebuilt;
+        synchronized (cache) {
+            rebuilt = cache.get(cacheKey);
+            if (rebuilt != null) {
+                hits++;
+            } else {
+                misses++;
+                if (compact.getLong("Ver") != data.getTemplateVersion()) staleVersions++;
+            }
+        }
+        if (rebuilt == null) {
+            // 模板修改后按当前模板重建
+            rebuilt = data.toItem(1, seed);
+            synchronized (cache) {
+                cache.put(cacheKey, rebuilt);
+            }
+        }
+
+        Item result = rebuilt.clone();
+        result.setCount(item.getCount());
+        CompoundTag full = result.getNamedTag();
+        if (full == null) full = new CompoundTag();
+        for (Map.Entry<String, Tag> entry : nbt.getTags().entrySet()) {
+            if (!TAG.equals(entry.getKey())) full.put(entry.getKey(), entry.getValue().copy());
+        }
+        result.setNamedTag(full);
+        return result;
+    }
+
+    /**
+     * 展开为发送给客户端的物品，附带原紧凑 NBT 以便还原
+     * @return 不是紧凑物品时返回 null
+     */
+    public Item expandForClient(Item item) {
+        Item expanded = expand(item);
+        if (expanded == null) return null;
+        CompoundTag full = expanded.getNamedTag();
+        full.putCompound(EXPANDED_TAG, item.getNamedTag().copy());
+        expanded.setNamedTag(full);
+        return expanded;
+    }
+
+    /**
+     * 把客户端发回的展开物品还原为紧凑形式
+     * @return 是否进行了还原
+     */
+    public static boolean restoreIfExpanded(Item item) {
+        if (item == null || item.getId() == 0 || !item.hasCompoundTag()) return false;
+        CompoundTag nbt = item.getNamedTag();
+        if (nbt == null || !nbt.contains(EXPANDED_TAG)) return false;
+        item.setNamedTag(nbt.getCompound(EXPANDED_TAG));
+        return true;
+    }
+
+    /**
+     * 清空重建缓存，物品配置重载时调用
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    public String getStats() {
+        synchronized (cache) {
+            long total = hits + misses;
+            double rate = total == 0 ? 0 : hits * 100.0 / total;
+            return String.format("紧凑物品缓存: %d/%d 条, 命中 %d, 未命中 %d, 命中率 %.1f%%, 模板版本不一致 %d",
+                    cache.size(), CACHE_SIZE, hits, misses, rate, staleVersions);
+        }
+    }
+}
@@ -5,12 +5,16 @@ import cn.nukkit.utils.ConfigSection;
 
 import java.io.File;
 import java.util.*;
+import com.yirankuma.yritems.node.CompiledNode;
 import com.yirankuma.yritems.node.NodeDefinition;
+import com.yirankuma.yritems.node.NodePlan;
 import com.yirankuma.yritems.node.NodeType;
+import com.yirankuma.yritems.script.ItemsScriptEngineManager;
 
 public class ItemConfig {
     private final YRItems plugin;
     private final Map<String, ItemData> items = new HashMap<>();
+    private final CompactItemCodec compactCodec = new CompactItemCodec(this);
     
     public ItemConfig(YRItems plugin) {
         this.plugin = plugin;
@@ -18,7 +22,12 @@ public class ItemConfig {
     }
     
     public void loadItems() {
+        // 旧的物品模板可能仍被外部持有，丢弃其缓存的成品物品
+        for (ItemData itemData : items.values()) {
+            itemData.invalidateCache();
+        }
         items.clear();
+        compactCodec.clear();
         
         // 创建items文件夹
         File itemsFolder = new File(plugin.getDataFolder(), "items");
@@ -55,6 +64,18 @@ public class ItemConfig {
         
         plugin.getLogger().info("成功加载了 " + items.size() + " 个物品配置");
     }
+
+    /**
+     * 把物品中 JS 节点的函数路径解析为脚本引擎中的句柄，脚本引擎加载或重载后调用
+     * 加载物品时不绑定：重载时物品先于脚本引擎重新加载，此时的引擎即将被替换。
+     * 未绑定的节点在第一次求值时解析
+     */
+    public void bindScripts(ItemsScriptEngineManager engine) {
+        if (engine == null) return;
+        for (ItemData itemData : items.values()) {
+            itemData.getNodePlan().bindScripts(engine);
+        }
+    }
     
     private void loadItemsFromFile(File file) {
         Config config = new Config(file, Config.YAML);
@@ -80,11 +101,17 @@ public class ItemConfig {
                 }
                 
                 ItemData itemData = new ItemData(identifier, name, lore, nbt);
+                itemData.setTemplate(itemKey, templateDigest(itemSection));
+                if (!itemData.isIdentifierResolved()) {
+                    plugin.getLogger().warning("物品 " + itemKey + " 的 identifier 无法识别: " + identifier
+                            + " (文件 " + file.getName() + ")，将生成钻石");
+                }
 
                 // 读取sections（节点）
                 if (itemSection.exists("sections")) {
                     Map<String, NodeDefinition> sections = parseSections(itemSection.getSection("sections"));
                     itemData.setSections(sections);
+                    reportNodePlan(itemKey, itemData);
                 }
 
                 items.put(itemKey, itemData);
@@ -97,6 +124,21 @@ public class ItemConfig {
         }
     }
     
+    /**
+     * 物品配置内容的 FNV-1a 64 位摘要，作为紧凑物品的模板版本
+     * 配置节按文件中的键顺序序列化，值的类型不同 (如 5 和 5.0) 时摘要不同
+     */
+    static long templateDigest(ConfigSection section) {
+        String text = String.valueOf(section);
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            h = (h ^ (c & 0xff)) * 0x100000001b3L;
+            h = (h ^ (c >>> 8)) * 0x100000001b3L;
+        }
+        return h;
+    }
+
     @SuppressWarnings("unchecked")
     private Map<String, Object> parseNbtSection(ConfigSection nbtSection) {
         Map<String, Object> nbt = new HashMap<>();
@@ -150,12 +192,57 @@ public class ItemConfig {
         return items.keySet();
     }
     
+    public CompactItemCodec getCompactCodec() {
+        return compactCodec;
+    }
+
     public void reloadItems() {
         loadItems();
     }
 
+    /**
+     * 输出节点求值顺序，并警告公式编译错误和循环依赖
+     */
+    private void reportNodePlan(String itemKey, ItemData itemData) {
+        NodePlan plan = itemData.getNodePlan();
+        for (CompiledNode node : plan.getNodes()) {
+            if (node.getCompileError() != null) {
+                plugin.getLogger().warning("物品 " + itemKey + " 的节点 " + node.getId() + ": " + node.getCompileError());
+            }
+        }
+        for (List<String> cycle : plan.getCycles()) {
+            plugin.getLogger().warning("物品 " + itemKey + " 的节点存在循环依赖: " + String.join(" -> ", cycle));
+        }
+        List<String> direct = new ArrayList<>();
+        for (CompiledNode node : plan.getNodes()) {
+            if (node.getType() == NodeType.CALCULATION && node.getFoldedValue() == null && node.isThreadSafe()) {
+                direct.add(node.getId());
+            }
+        }
+        if (!direct.isEmpty()) {
+            plugin.getLogger().debug("物品 " + itemKey + " 的 CALCULATION 节点不需要脚本引擎，已改为直接求值: " + String.join(", ", direct));
+        }
+        if (!plan.getFolded().isEmpty()) {
+            plugin.getLogger().info("物品 " + itemKey + " 折叠了 " + plan.getFolded().size() + " 个常量节点: "
+                    + describeFolded(plan));
+        }
+        plugin.getLogger().debug("物品 " + itemKey + " 节点顺序: " + String.join(" -> ", plan.getOrder())
+                + " (实际求值 " + itemData.getRollPlan().size() + "/" + plan.size() + ")");
+    }
+
+    private static String describeFolded(NodePlan plan) {
+        StringBuilder sb = new StringBuilder();
+        for (CompiledNode node : plan.getNodes()) {
+            if (node.getFoldedValue() == null) continue;
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(node.getId()).append('(').append(node.getType()).append(")=").append(node.getFoldedValue());
+        }
+        return sb.toString();
+    }
+
     private Map<String, NodeDefinition> parseSections(ConfigSection sectionsRoot) {
-        Map<String, NodeDefinition> result = new HashMap<>();
+        // 保持声明顺序，使节点求值顺序稳定
+        Map<String, NodeDefinition> result = new LinkedHashMap<>();
         for (String id : sectionsRoot.getKeys(false)) {
             ConfigSection defSec = sectionsRoot.getSection(id);
             String typeStr = defSec.getString("type", "").toUpperCase();
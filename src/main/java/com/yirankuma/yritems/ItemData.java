@@ -1,23 +1,48 @@
 package com.yirankuma.yritems;
 
+import cn.nukkit.Server;
 import cn.nukkit.item.Item;
 import cn.nukkit.nbt.tag.CompoundTag;
-import cn.nukkit.nbt.tag.ListTag;
 import cn.nukkit.nbt.tag.Tag;
 
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+import com.yirankuma.yritems.node.EvalContext;
 import com.yirankuma.yritems.node.NodeDefinition;
 import com.yirankuma.yritems.node.NodeEvaluator;
-import com.yirankuma.yritems.node.NodeResult;
+import com.yirankuma.yritems.node.NodePlan;
+import com.yirankuma.yritems.node.RandomSource;
 
 public class ItemData {
+    /** 批量生成时每个并行任务至少处理的物品数 */
+    private static final int BATCH_CHUNK = 16;
+
     private String identifier;
     private String name;
     private List<String> lore;
     private Map<String, Object> nbt;
     private Map<String, NodeDefinition> sections;
+    /** 配置中的物品名与内容版本，用于种子紧凑编码 */
+    private String templateKey;
+    private long templateVersion;
+    /** identifier 解析出的物品 ID 与特殊值，无法识别时为钻石 */
+    private int itemId = Item.DIAMOND;
+    private int itemMeta = 0;
+    private boolean identifierResolved;
+    /** 完整的节点计划 */
+    private NodePlan nodePlan = NodePlan.EMPTY;
+    /** 仅包含名称、Lore、NBT 实际引用到的节点 */
+    private NodePlan rollPlan = NodePlan.EMPTY;
+    /** 预解析的名称、Lore 模板 */
+    private PlaceholderTemplate nameTemplate;
+    private PlaceholderTemplate[] loreTemplates;
+    /** 预构建的 NBT 原型，没有 NBT 配置时为 null */
+    private NbtPrototype nbtPrototype;
+    /** 不需要求值任何节点的模板缓存的成品物品，首次生成时构建 */
+    private volatile Item staticItem;
 
     public ItemData(String identifier, String name, List<String> lore, Map<String, Object> nbt) {
         this.identifier = identifier;
@@ -25,6 +50,8 @@ public class ItemData {
         this.lore = lore;
         this.nbt = nbt;
         this.sections = new HashMap<>();
+        resolveIdentifier();
+        compileTemplates();
     }
     
     /**
@@ -37,6 +64,8 @@ public class ItemData {
         this.name = item.hasCustomName() ? item.getCustomName() : null;
         this.lore = item.getLore() != null ? Arrays.asList(item.getLore()) : new ArrayList<>();
         this.nbt = extractNbtFromItem(item);
+        resolveIdentifier();
+        compileTemplates();
     }
     
     /**
@@ -54,6 +83,40 @@ public class ItemData {
     
     public void setIdentifier(String identifier) {
         this.identifier = identifier;
+        resolveIdentifier();
+        invalidateCache();
+    }
+
+    /**
+     * identifier 是否能识别为物品，不能识别时生成钻石
+     */
+    public boolean isIdentifierResolved() {
+        return identifierResolved;
+    }
+
+    /**
+     * 把 identifier 解析为物品 ID 与特殊值，生成物品时不再解析字符串
+     */
+    private void resolveIdentifier() {
+        this.itemId = Item.DIAMOND;
+        this.itemMeta = 0;
+        this.identifierResolved = false;
+        if (this.identifier == null || this.identifier.isEmpty()) return;
+        try {
+            // 解析identifier，例如 "minecraft:diamond" 或 "diamond"
+            String[] parts = this.identifier.split(":");
+            String itemName = parts.length > 1 ? parts[1] : parts[0];
+
+            // 尝试通过名称获取物品ID
+            Item item = Item.fromString(itemName);
+            if (item != null && item.getId() != 0) {
+                this.itemId = item.getId();
+                this.itemMeta = item.getDamage();
+                this.identifierResolved = true;
+            }
+        } catch (Exception ignored) {
+            // 解析失败时使用默认物品
+        }
     }
     
     public String getName() {
@@ -62,6 +125,8 @@ public class ItemData {
     
     public void setName(String name) {
         this.name = name;
+        this.nameTemplate = PlaceholderTemplate.compile(name);
+        updateRollPlan();
     }
     
     public List<String> getLore() {
@@ -70,6 +135,8 @@ public class ItemData {
     
     public void setLore(List<String> lore) {
         this.lore = lore;
+        this.loreTemplates = compileLore(lore);
+        updateRollPlan();
     }
     
     public Map<String, Object> getNbt() {
@@ -78,14 +145,102 @@ public class ItemData {
     
     public void setNbt(Map<String, Object> nbt) {
         this.nbt = nbt;
+        this.nbtPrototype = NbtPrototype.compile(nbt);
+        updateRollPlan();
+    }
+
+    public String getTemplateKey() {
+        return templateKey;
+    }
+
+    public long getTemplateVersion() {
+        return templateVersion;
+    }
+
+    /**
+     * 设置模板名与版本 (配置内容的 64 位摘要)，由 ItemConfig 加载时调用
+     */
+    public void setTemplate(String templateKey, long templateVersion) {
+        this.templateKey = templateKey;
+        this.templateVersion = templateVersion;
     }
 
     public Map<String, NodeDefinition> getSections() {
         return sections;
     }
 
+    /**
+     * 设置节点定义并编译执行计划
+     * 直接修改 getSections() 返回的 Map 不会生效，需要重新调用此方法
+     */
     public void setSections(Map<String, NodeDefinition> sections) {
         this.sections = sections != null ? sections : new HashMap<>();
+        this.nodePlan = NodePlan.compile(this.sections);
+        updateRollPlan();
+    }
+
+    public NodePlan getNodePlan() {
+        return nodePlan;
+    }
+
+    private void updateRollPlan() {
+        NodePlan plan = nodePlan.restrictTo(collectReferences());
+        if (nameTemplate != null) nameTemplate.link(plan);
+        for (PlaceholderTemplate template : loreTemplates) template.link(plan);
+        if (nbtPrototype != null) nbtPrototype.link(plan);
+        this.rollPlan = plan;
+        invalidateCache();
+    }
+
+    /**
+     * 生成物品时实际执行的节点计划 (只包含被引用到的节点及其依赖)
+     */
+    public NodePlan getRollPlan() {
+        return rollPlan;
+    }
+
+    /**
+     * 没有需要求值的节点 (或都已折叠为常量) 时，每次生成的物品都相同
+     */
+    public boolean isStatic() {
+        return rollPlan.isConstant();
+    }
+
+    /**
+     * 丢弃缓存的成品物品，配置重载或修改模板后调用
+     */
+    public void invalidateCache() {
+        this.staticItem = null;
+    }
+
+    /**
+     * 预解析名称、Lore 中的占位符并构建 NBT 原型
+     */
+    private void compileTemplates() {
+        this.nameTemplate = PlaceholderTemplate.compile(this.name);
+        this.loreTemplates = compileLore(this.lore);
+        this.nbtPrototype = NbtPrototype.compile(this.nbt);
+    }
+
+    private static PlaceholderTemplate[] compileLore(List<String> lore) {
+        if (lore == null) return new PlaceholderTemplate[0];
+        PlaceholderTemplate[] templates = new PlaceholderTemplate[lore.size()];
+        int i = 0;
+        for (String line : lore) templates[i++] = PlaceholderTemplate.compile(line);
+        return templates;
+    }
+
+    /**
+     * 收集名称、Lore、NBT 中引用的节点名
+     */
+    private Set<String> collectReferences() {
+        Set<String> refs = new LinkedHashSet<>();
+        if (nameTemplate != null) nameTemplate.collectReferences(refs);
+        if (loreTemplates != null) {
+            for (PlaceholderTemplate t : loreTemplates) t.collectReferences(refs);
+        }
+        if (nbtPrototype != null) nbtPrototype.collectReferences(refs);
+        return refs;
     }
 
     /**
@@ -98,315 +253,176 @@ public class ItemData {
     
     /**
      * 将ItemData转换为Nukkit的Item对象
+     * 静态模板直接复制缓存的成品物品
      * @param count 物品数量
      * @return 创建的Item对象
      */
     public Item toItem(int count) {
-        Item item;
-        
-        // 根据identifier创建物品
-        if (this.identifier != null && !this.identifier.isEmpty()) {
-            try {
-                // 解析identifier，例如 "minecraft:diamond" 或 "diamond"
-                String[] parts = this.identifier.split(":");
-                String itemName = parts.length > 1 ? parts[1] : parts[0];
-                
-                // 尝试通过名称获取物品ID
-                item = Item.fromString(itemName);
-                if (item.getId() == 0) {
-                    // 如果无法识别，默认使用钻石
-                    item = Item.get(Item.DIAMOND, 0, count);
-                } else {
-                    item.setCount(count);
-                }
-            } catch (Exception e) {
-                // 解析失败时使用默认物品
-                item = Item.get(Item.DIAMOND, 0, count);
+        if (isStatic()) {
+            Item cached = staticItem;
+            if (cached == null) {
+                cached = buildItem(1, NodeEvaluator.current());
+                staticItem = cached;
             }
-        } else {
-            // 没有identifier时使用默认物品
-            item = Item.get(Item.DIAMOND, 0, count);
-        }
-        
-        // 节点计算与占位符替换
-        Map<String, NodeResult> nodeResults = new NodeEvaluator().evaluateAll(this.sections);
-
-        // 设置物品名称（带节点解析）
-        if (this.name != null) {
-            String resolvedName = resolvePlaceholders(this.name, nodeResults);
-            item.setCustomName(resolvedName);
-        }
-        
-        // 设置lore
-        if (this.lore != null && !this.lore.isEmpty()) {
-            List<String> resolvedLore = new ArrayList<>();
-            for (String line : this.lore) {
-                resolvedLore.add(resolvePlaceholders(line, nodeResults));
-            }
-            String[] loreArray = resolvedLore.toArray(new String[0]);
-            item.setLore(loreArray);
-        }
-        
-        // 设置NBT
-        CompoundTag nbt = item.getNamedTag();
-        if (nbt == null) {
-            nbt = new CompoundTag();
+            Item item = cached.clone();
+            item.setCount(count);
+            return item;
         }
+        return buildItem(count, NodeEvaluator.current());
+    }
 
-        if (this.nbt != null && !this.nbt.isEmpty()) {
-            applyNbtToItem(nbt, this.nbt, nodeResults);
-        }
+    /**
+     * 用指定种子生成物品，相同模板和种子的结果相同
+     * @param count 物品数量
+     * @param seed 随机种子
+     */
+    public Item toItem(int count, long seed) {
+        if (isStatic()) return toItem(count);
+        return buildItem(count, new NodeEvaluator(RandomSource.seeded(seed)));
+    }
 
-        // 检查是否配置了 UseDynamicLore
-        if (this.nbt != null && this.nbt.containsKey("UseDynamicLore")) {
-            Object useDynamicLore = this.nbt.get("UseDynamicLore");
-            if (useDynamicLore instanceof Number && ((Number) useDynamicLore).byteValue() == 1) {
-                nbt.putByte("UseDynamicLore", (byte) 1);
-            }
-        }
+    /**
+     * 节点结果能否由种子复现 (不含调用脚本引擎的节点)
+     */
+    public boolean isSeedReproducible() {
+        return templateKey != null && rollPlan.isThreadSafe();
+    }
 
+    /**
+     * 生成种子紧凑编码的物品：NBT 只包含 {@link CompactItemCodec#TAG}，完整数据由 {@link CompactItemCodec} 按需重建
+     * 无法由种子复现的模板返回完整物品
+     *
+     * 服务器端的物品上没有名称、Lore 和 YRAttributes，插件或脚本需要读取这些数据时
+     * 先用 {@link CompactItemCodec#expand(Item)} 展开
+     * @param count 物品数量
+     */
+    public Item toCompactItem(int count) {
+        if (!isSeedReproducible()) return toItem(count);
+        Item item = Item.get(itemId, itemMeta, count);
+        CompoundTag nbt = new CompoundTag();
+        nbt.putCompound(CompactItemCodec.TAG,
+                CompactItemCodec.encode(templateKey, templateVersion, ThreadLocalRandom.current().nextLong()));
         item.setNamedTag(nbt);
-
         return item;
     }
 
-    private String resolvePlaceholders(String text, Map<String, NodeResult> ctx) {
-        if (text == null || text.isEmpty() || ctx == null || ctx.isEmpty()) return text;
-        String result = text;
-        // 支持 <id> <id.0> <id.length> <id.else.0> <id.else.length>
-        Pattern p = Pattern.compile("<([a-zA-Z0-9_-]+)(?:\\.([a-zA-Z0-9_]+))?(?:\\.([a-zA-Z0-9_]+))?>");
-        Matcher m = p.matcher(result);
-        StringBuffer sb = new StringBuffer();
-        while (m.find()) {
-            String id = m.group(1);
-            String part1 = m.group(2);
-            String part2 = m.group(3);
-            NodeResult r = ctx.get(id);
-            String replacement = m.group(0);
-            if (r != null) {
-                if (part1 == null) {
-                    replacement = r.asString();
-                } else if ("length".equalsIgnoreCase(part1)) {
-                    replacement = String.valueOf(r.getLength());
-                } else if ("else".equalsIgnoreCase(part1)) {
-                    if (part2 == null || "length".equalsIgnoreCase(part2)) {
-                        replacement = String.valueOf(r.getElseLength());
-                    } else {
-                        int idx = safeIndex(part2);
-                        List<String> elseList = r.getElseList();
-                        replacement = idx >= 0 && idx < elseList.size() ? elseList.get(idx) : "";
-                    }
-                } else {
-                    int idx = safeIndex(part1);
-                    List<String> list = r.getList();
-                    replacement = idx >= 0 && idx < list.size() ? list.get(idx) : "";
-                }
-            }
-            m.appendReplacement(sb, Matcher.quoteReplacement(replacement));
-        }
-        m.appendTail(sb);
-        return sb.toString();
-    }
-
-    private int safeIndex(String s) {
-        try { return Integer.parseInt(s); } catch (Exception e) { return -1; }
-    }
-    
     /**
-     * 将NBT数据应用到物品的NBT标签中
-     * @param nbt 物品的NBT标签
-     * @param nbtData 要应用的NBT数据
+     * 批量生成互相独立的物品，每个数量为 1
+     * 节点都不依赖脚本引擎时在 ForkJoin 公共池中并行生成，每个工作线程使用自己的线程本地随机源；
+     * 含 JS 节点的模板在当前线程依次生成
+     * @param amount 物品个数
+     * @return 生成的物品列表
      */
-    @SuppressWarnings("unchecked")
-    private void applyNbtToItem(CompoundTag nbt, Map<String, Object> nbtData, Map<String, NodeResult> nodeCtx) {
-        for (Map.Entry<String, Object> entry : nbtData.entrySet()) {
-            String key = entry.getKey();
-            Object value = deepResolvePlaceholders(entry.getValue(), nodeCtx);
-            
-            // 处理带类型指定的NBT值
-            if (value instanceof Map) {
-                Map<String, Object> valueMap = (Map<String, Object>) value;
-                if (valueMap.containsKey("type") && valueMap.containsKey("value")) {
-                    // 格式: { type: "byte", value: 1 }
-                    String type = (String) valueMap.get("type");
-                    Object val = valueMap.get("value");
-                    applyTypedNbtValue(nbt, key, type, val);
-                } else {
-                    // 嵌套的NBT
-                    CompoundTag nestedTag = new CompoundTag();
-                    applyNbtToItem(nestedTag, valueMap, nodeCtx);
-                    nbt.putCompound(key, nestedTag);
-                }
-            } else if (value instanceof String) {
-                String strValue = (String) value;
-                if (strValue.contains(":")) {
-                    // 格式: "type:value" 例如 "byte:1", "int:63"
-                    String[] parts = strValue.split(":", 2);
-                    if (parts.length == 2) {
-                        String type = parts[0];
-                        String val = parts[1];
-                        applyTypedNbtValue(nbt, key, type, val);
-                    } else {
-                        nbt.putString(key, strValue);
-                    }
-                } else {
-                    nbt.putString(key, strValue);
-                }
-            } else if (value instanceof List) {
-                // 处理列表类型的NBT
-                List<?> list = (List<?>) value;
-                if (!list.isEmpty()) {
-                    // 检查列表中是否包含复合标签（Map类型）
-                    boolean hasCompoundTags = list.stream().anyMatch(item -> item instanceof Map);
-                    
-                    if (hasCompoundTags) {
-                        // 复合标签列表（如附魔列表）
-                        ListTag<CompoundTag> listTag = new ListTag<>(key);
-                        for (Object item : list) {
-                            if (item instanceof Map) {
-                                CompoundTag itemTag = new CompoundTag();
-                                applyNbtToItem(itemTag, (Map<String, Object>) item, nodeCtx);
-                                listTag.add(itemTag);
-                            }
-                        }
-                        nbt.putList(listTag);
-                    } else {
-                        // 混合类型列表，统一转换为字符串列表
-                        ListTag<cn.nukkit.nbt.tag.StringTag> stringListTag = new ListTag<>(key);
-                        for (Object item : list) {
-                            String s = String.valueOf(item);
-                            stringListTag.add(new cn.nukkit.nbt.tag.StringTag("", s));
-                        }
-                        nbt.putList(stringListTag);
-                    }
-                }
-            } else {
-                // 自动类型推断
-                applyAutoTypedNbtValue(nbt, key, value);
-            }
+    public List<Item> toItems(int amount) {
+        if (amount <= 0) return new ArrayList<>();
+        Item[] items = new Item[amount];
+        if (isStatic()) {
+            for (int i = 0; i < amount; i++) items[i] = toItem(1);
+        } else if (amount > BATCH_CHUNK && rollPlan.isThreadSafe()) {
+            ForkJoinPool.commonPool().invoke(new RollTask(this, items, 0, amount));
+        } else {
+            NodeEvaluator evaluator = NodeEvaluator.current();
+            for (int i = 0; i < amount; i++) items[i] = buildItem(1, evaluator);
         }
+        return new ArrayList<>(Arrays.asList(items));
     }
 
-    // 深度解析：在写入 NBT 之前，递归替换 Map/List/String 中的占位符
-    @SuppressWarnings("unchecked")
-    private Object deepResolvePlaceholders(Object value, Map<String, NodeResult> nodeCtx) {
-        if (value == null || nodeCtx == null || nodeCtx.isEmpty()) return value;
-        if (value instanceof String) {
-            return resolvePlaceholders((String) value, nodeCtx);
+    /**
+     * {@link #toItems(int)} 的异步版本
+     * 节点都不依赖脚本引擎时在 ForkJoin 公共池中生成，否则在服务器主线程生成
+     */
+    public CompletableFuture<List<Item>> toItemsAsync(int amount) {
+        if (isStatic() || rollPlan.isThreadSafe()) {
+            return CompletableFuture.supplyAsync(() -> toItems(amount), ForkJoinPool.commonPool());
         }
-        if (value instanceof List) {
-            List<?> list = (List<?>) value;
-            List<Object> resolved = new ArrayList<>(list.size());
-            for (Object item : list) {
-                resolved.add(deepResolvePlaceholders(item, nodeCtx));
-            }
-            return resolved;
+        Server server = Server.getInstance();
+        if (server.isPrimaryThread()) {
+            return CompletableFuture.completedFuture(toItems(amount));
         }
-        if (value instanceof Map) {
-            Map<String, Object> map = (Map<String, Object>) value;
-            // 若是 {type, value} 结构，仅解析 value；否则解析所有键值
-            if (map.containsKey("type") && map.containsKey("value")) {
-                Map<String, Object> copy = new HashMap<>(map);
-                copy.put("value", deepResolvePlaceholders(copy.get("value"), nodeCtx));
-                return copy;
-            }
-            Map<String, Object> res = new HashMap<>();
-            for (Map.Entry<String, Object> e : map.entrySet()) {
-                res.put(e.getKey(), deepResolvePlaceholders(e.getValue(), nodeCtx));
+        CompletableFuture<List<Item>> future = new CompletableFuture<>();
+        server.getScheduler().scheduleTask(YRItems.getInstance(), () -> {
+            try {
+                future.complete(toItems(amount));
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
             }
-            return res;
-        }
-        return value;
+        });
+        return future;
     }
-    
+
     /**
-     * 根据指定的类型应用NBT值
+     * 并行生成任务：区间足够小时用当前工作线程的求值器顺序生成，否则二分
      */
-    private void applyTypedNbtValue(CompoundTag nbt, String key, String type, Object value) {
-        try {
-            switch (type.toLowerCase()) {
-                case "byte":
-                    if (value instanceof Number) {
-                        nbt.putByte(key, ((Number) value).byteValue());
-                    } else {
-                        nbt.putByte(key, Byte.parseByte(String.valueOf(value)));
-                    }
-                    break;
-                case "short":
-                    if (value instanceof Number) {
-                        nbt.putShort(key, ((Number) value).shortValue());
-                    } else {
-                        nbt.putShort(key, Short.parseShort(String.valueOf(value)));
-                    }
-                    break;
-                case "int":
-                case "integer":
-                    if (value instanceof Number) {
-                        nbt.putInt(key, ((Number) value).intValue());
-                    } else {
-                        nbt.putInt(key, Integer.parseInt(String.valueOf(value)));
-                    }
-                    break;
-                case "long":
-                    if (value instanceof Number) {
-                        nbt.putLong(key, ((Number) value).longValue());
-                    } else {
-                        nbt.putLong(key, Long.parseLong(String.valueOf(value)));
-                    }
-                    break;
-                case "float":
-                    if (value instanceof Number) {
-                        nbt.putFloat(key, ((Number) value).floatValue());
-                    } else {
-                        nbt.putFloat(key, Float.parseFloat(String.valueOf(value)));
-                    }
-                    break;
-                case "double":
-                    if (value instanceof Number) {
-                        nbt.putDouble(key, ((Number) value).doubleValue());
-                    } else {
-                        nbt.putDouble(key, Double.parseDouble(String.valueOf(value)));
-                    }
-                    break;
-                case "string":
-                    nbt.putString(key, String.valueOf(value));
-                    break;
-                case "boolean":
-                case "bool":
-                    if (value instanceof Boolean) {
-                        nbt.putBoolean(key, (Boolean) value);
-                    } else {
-                        nbt.putBoolean(key, Boolean.parseBoolean(String.valueOf(value)));
-                    }
-                    break;
-                default:
-                    // 未知类型，默认为字符串
-                    nbt.putString(key, String.valueOf(value));
-                    break;
+    private static final class RollTask extends RecursiveAction {
+        private final ItemData data;
+        private final Item[] out;
+        private final int from;
+        private final int to;
+
+        RollTask(ItemData data, Item[] out, int from, int to) {
+            this.data = data;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_CHUNK) {
+                NodeEvaluator evaluator = NodeEvaluator.current();
+                for (int i = from; i < to; i++) out[i] = data.buildItem(1, evaluator);
+                return;
             }
-        } catch (NumberFormatException e) {
-            // 解析失败，使用字符串类型
-            nbt.putString(key, String.valueOf(value));
+            int mid = (from + to) >>> 1;
+            invokeAll(new RollTask(data, out, from, mid), new RollTask(data, out, mid, to));
         }
     }
-    
+
     /**
-     * 自动推断类型并应用NBT值（保持向后兼容）
+     * 完整构建物品：创建物品、节点求值、写入名称 Lore 和 NBT
      */
-    private void applyAutoTypedNbtValue(CompoundTag nbt, String key, Object value) {
-        if (value instanceof Boolean) {
-            nbt.putBoolean(key, (Boolean) value);
-        } else if (value instanceof Integer) {
-            nbt.putInt(key, (Integer) value);
-        } else if (value instanceof Long) {
-            nbt.putLong(key, (Long) value);
-        } else if (value instanceof Float) {
-            nbt.putFloat(key, (Float) value);
-        } else if (value instanceof Double) {
-            nbt.putDouble(key, (Double) value);
-        } else {
-            nbt.putString(key, String.valueOf(value));
+    private Item buildItem(int count, NodeEvaluator evaluator) {
+        // identifier 已在加载时解析，无法识别的为钻石
+        Item item = Item.get(itemId, itemMeta, count);
+        
+        // 节点计算与占位符替换
+        EvalContext nodeResults = evaluator.run(this.rollPlan);
+        StringBuilder buf = new StringBuilder(64);
+
+        // 设置物品名称（带节点解析）
+        if (this.name != null) {
+            String resolvedName = nameTemplate.render(nodeResults, buf);
+            item.setCustomName(resolvedName);
         }
+        
+        // 设置lore
+        if (this.lore != null && !this.lore.isEmpty()) {
+            String[] loreArray = new String[loreTemplates.length];
+            for (int i = 0; i < loreTemplates.length; i++) {
+                loreArray[i] = loreTemplates[i].render(nodeResults, buf);
+            }
+            item.setLore(loreArray);
+        }
+        
+        // 设置NBT：复制原型并补写占位符，覆盖物品原有的同名标签
+        CompoundTag nbt = item.getNamedTag();
+        if (nbtPrototype != null) {
+            CompoundTag rolled = nbtPrototype.instantiate(nodeResults, buf);
+            if (nbt == null) {
+                nbt = rolled;
+            } else {
+                for (Map.Entry<String, Tag> entry : rolled.getTags().entrySet()) {
+                    nbt.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        if (nbt == null) {
+            nbt = new CompoundTag();
+        }
+
+        item.setNamedTag(nbt);
+
+        return item;
     }
     
     /**
@@ -0,0 +1,403 @@
+package com.yirankuma.yritems;
+
+import cn.nukkit.nbt.tag.CompoundTag;
+import cn.nukkit.nbt.tag.ListTag;
+import cn.nukkit.nbt.tag.StringTag;
+import cn.nukkit.nbt.tag.Tag;
+import com.yirankuma.yritems.node.EvalContext;
+import com.yirankuma.yritems.node.NodePlan;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 预构建的 NBT 原型
+ * 加载时把配置中的 NBT 一次性转换为 CompoundTag，"type:value" 字符串、{type, value} 结构、
+ * 列表形态都在此时确定；含占位符的位置记录为补丁，生成物品时复制原型后只补写这些位置
+ */
+final class NbtPrototype {
+    /** 字符串类型前缀在加载时已确定，渲染后去掉前缀按该类型写入 */
+    private static final int FIXED_TYPE = 0;
+    /** 占位符出现在类型前缀之前，渲染后再按 "type:value" 拆分 */
+    private static final int SPLIT = 1;
+    /** {type, value} 结构 */
+    private static final int TYPED = 2;
+    /** 字符串列表中的元素 */
+    private static final int LIST_ELEMENT = 3;
+
+    private final CompoundTag prototype;
+    private final Patch[] patches;
+
+    private NbtPrototype(CompoundTag prototype, List<Patch> patches) {
+        this.prototype = prototype;
+        this.patches = patches.toArray(new Patch[0]);
+    }
+
+    /**
+     * @return 没有 NBT 配置时返回 null
+     */
+    static NbtPrototype compile(Map<String, Object> nbt) {
+        if (nbt == null || nbt.isEmpty()) return null;
+        CompoundTag root = new CompoundTag();
+        List<Patch> patches = new ArrayList<>();
+        build(root, compileMap(nbt), new ArrayList<>(), patches);
+
+        // 检查是否配置了 UseDynamicLore
+        Object useDynamicLore = nbt.get("UseDynamicLore");
+        if (useDynamicLore instanceof Number && ((Number) useDynamicLore).byteValue() == 1) {
+            root.putByte("UseDynamicLore", (byte) 1);
+        }
+        return new NbtPrototype(root, patches);
+    }
+
+    /**
+     * 不含占位符，每次生成的结果都相同
+     */
+    boolean isStatic() {
+        return patches.length == 0;
+    }
+
+    void collectReferences(Set<String> out) {
+        for (Patch p : patches) collectReferences(p.value, out);
+    }
+
+    /**
+     * 把补丁中模板的引用解析为计划中的槽位
+     */
+    void link(NodePlan plan) {
+        for (Patch p : patches) link(p.value, plan);
+    }
+
+    /**
+     * 复制原型并写入本次的节点结果
+     */
+    CompoundTag instantiate(EvalContext ctx, StringBuilder buf) {
+        CompoundTag tag = prototype.copy();
+        for (Patch p : patches) {
+            Tag container = tag;
+            for (Object step : p.path) {
+                container = step instanceof Integer
+                        ? ((ListTag<?>) container).get((Integer) step)
+                        : ((CompoundTag) container).get((String) step);
+            }
+            Object value = resolve(p.value, ctx, buf);
+            switch (p.mode) {
+                case FIXED_TYPE:
+                    applyTypedNbtValue((CompoundTag) container, p.key, p.type,
+                            String.valueOf(value).substring(p.valueOffset));
+                    break;
+                case SPLIT:
+                    applyTypedString((CompoundTag) container, p.key, String.valueOf(value));
+                    break;
+                case TYPED:
+                    applyTypedNbtValue((CompoundTag) container, p.key, p.type, value);
+                    break;
+                default:
+                    ((StringTag) ((ListTag<?>) container).get(p.index)).data = String.valueOf(value);
+                    break;
+            }
+        }
+        return tag;
+    }
+
+    /**
+     * 按 ItemData 原先的规则构建 NBT，含占位符的位置只记录补丁
+     */
+    @SuppressWarnings("unchecked")
+    private static void build(CompoundTag nbt, Map<String, Object> nbtData, List<Object> path, List<Patch> patches) {
+        for (Map.Entry<String, Object> entry : nbtData.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+
+            if (value instanceof Map) {
+                Map<String, Object> valueMap = (Map<String, Object>) value;
+                if (valueMap.containsKey("type") && valueMap.containsKey("value")) {
+                    // 格式: { type: "byte", value: 1 }
+                    String type = String.valueOf(valueMap.get("type"));
+                    Object val = valueMap.get("value");
+                    if (hasTemplate(val)) {
+                        patches.add(new Patch(path, key, -1, TYPED, type, 0, val));
+                    } else {
+                        applyTypedNbtValue(nbt, key, type, val);
+                    }
+                } else {
+                    // 嵌套的NBT
+                    CompoundTag nestedTag = new CompoundTag();
+                    build(nestedTag, valueMap, append(path, key), patches);
+                    nbt.putCompound(key, nestedTag);
+                }
+            } else if (value instanceof PlaceholderTemplate) {
+                PlaceholderTemplate template = (PlaceholderTemplate) value;
+                int colon = template.getLeadingLiteral().indexOf(':');
+                if (colon >= 0) {
+                    patches.add(new Patch(path, key, -1, FIXED_TYPE,
+                            template.getLeadingLiteral().substring(0, colon), colon + 1, template));
+                } else {
+                    patches.add(new Patch(path, key, -1, SPLIT, null, 0, template));
+                }
+            } else if (value instanceof String) {
+                applyTypedString(nbt, key, (String) value);
+            } else if (value instanceof List) {
+                // 处理列表类型的NBT
+                List<?> list = (List<?>) value;
+                if (!list.isEmpty()) {
+                    boolean hasCompoundTags = list.stream().anyMatch(item -> item instanceof Map);
+                    List<Object> listPath = append(path, key);
+                    if (hasCompoundTags) {
+                        // 复合标签列表（如附魔列表），非复合元素忽略
+                        ListTag<CompoundTag> listTag = new ListTag<>(key);
+                        for (Object item : list) {
+                            if (item instanceof Map) {
+                                CompoundTag itemTag = new CompoundTag();
+                                build(itemTag, (Map<String, Object>) item, append(listPath, listTag.size()), patches);
+                                listTag.add(itemTag);
+                            }
+                        }
+                        nbt.putList(listTag);
+                    } else {
+                        // 混合类型列表，统一转换为字符串列表
+                        ListTag<StringTag> stringListTag = new ListTag<>(key);
+                        for (Object item : list) {
+                            if (hasTemplate(item)) {
+                                patches.add(new Patch(listPath, null, stringListTag.size(), LIST_ELEMENT, null, 0, item));
+                                stringListTag.add(new StringTag("", ""));
+                            } else {
+                                stringListTag.add(new StringTag("", String.valueOf(item)));
+                            }
+                        }
+                        nbt.putList(stringListTag);
+                    }
+                }
+            } else {
+                // 自动类型推断
+                applyAutoTypedNbtValue(nbt, key, value);
+            }
+        }
+    }
+
+    private static List<Object> append(List<Object> path, Object step) {
+        List<Object> next = new ArrayList<>(path.size() + 1);
+        next.addAll(path);
+        next.add(step);
+        return next;
+    }
+
+    /**
+     * 复制 NBT 树，把含占位符的字符串替换为模板
+     * {type, value} 结构只解析 value
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> compileMap(Map<String, Object> map) {
+        Map<String, Object> compiled = new LinkedHashMap<>();
+        boolean typed = map.containsKey("type") && map.containsKey("value");
+        for (Map.Entry<String, Object> e : map.entrySet()) {
+            compiled.put(e.getKey(), !typed || "value".equals(e.getKey())
+                    ? compileValue(e.getValue()) : e.getValue());
+        }
+        return compiled;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object compileValue(Object value) {
+        if (value instanceof String) {
+            PlaceholderTemplate template = PlaceholderTemplate.compile((String) value);
+            return template.isStatic() ? value : template;
+        }
+        if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            List<Object> compiled = new ArrayList<>(list.size());
+            for (Object item : list) compiled.add(compileValue(item));
+            return compiled;
+        }
+        if (value instanceof Map) {
+            return compileMap((Map<String, Object>) value);
+        }
+        return value;
+    }
+
+    private static boolean hasTemplate(Object value) {
+        if (value instanceof PlaceholderTemplate) return true;
+        if (value instanceof Collection) {
+            for (Object item : (Collection<?>) value) {
+                if (hasTemplate(item)) return true;
+            }
+        } else if (value instanceof Map) {
+            for (Object item : ((Map<?, ?>) value).values()) {
+                if (hasTemplate(item)) return true;
+            }
+        }
+        return false;
+    }
+
+    private static void collectReferences(Object value, Set<String> out) {
+        if (value instanceof PlaceholderTemplate) {
+            ((PlaceholderTemplate) value).collectReferences(out);
+        } else if (value instanceof Collection) {
+            for (Object item : (Collection<?>) value) collectReferences(item, out);
+        } else if (value instanceof Map) {
+            for (Object item : ((Map<?, ?>) value).values()) collectReferences(item, out);
+        }
+    }
+
+    private static void link(Object value, NodePlan plan) {
+        if (value instanceof PlaceholderTemplate) {
+            ((PlaceholderTemplate) value).link(plan);
+        } else if (value instanceof Collection) {
+            for (Object item : (Collection<?>) value) link(item, plan);
+        } else if (value instanceof Map) {
+            for (Object item : ((Map<?, ?>) value).values()) link(item, plan);
+        }
+    }
+
+    /**
+     * 渲染补丁中的模板，嵌套在列表或 Map 中的模板一并渲染
+     */
+    private static Object resolve(Object value, EvalContext ctx, StringBuilder buf) {
+        if (value instanceof PlaceholderTemplate) {
+            return ((PlaceholderTemplate) value).render(ctx, buf);
+        }
+        if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            List<Object> resolved = new ArrayList<>(list.size());
+            for (Object item : list) resolved.add(resolve(item, ctx, buf));
+            return resolved;
+        }
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            Map<Object, Object> resolved = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> e : map.entrySet()) resolved.put(e.getKey(), resolve(e.getValue(), ctx, buf));
+            return resolved;
+        }
+        return value;
+    }
+
+    /**
+     * 格式: "type:value" 例如 "byte:1", "int:63"，不含冒号时为字符串
+     */
+    private static void applyTypedString(CompoundTag nbt, String key, String strValue) {
+        int colon = strValue.indexOf(':');
+        if (colon >= 0) {
+            applyTypedNbtValue(nbt, key, strValue.substring(0, colon), strValue.substring(colon + 1));
+        } else {
+            nbt.putString(key, strValue);
+        }
+    }
+
+    /**
+     * 根据指定的类型应用NBT值
+     */
+    private static void applyTypedNbtValue(CompoundTag nbt, String key, String type, Object value) {
+        try {
+            switch (type.toLowerCase()) {
+                case "byte":
+                    if (value instanceof Number) {
+                        nbt.putByte(key, ((Number) value).byteValue());
+                    } else {
+                        nbt.putByte(key, Byte.parseByte(String.valueOf(value)));
+                    }
+                    break;
+                case "short":
+                    if (value instanceof Number) {
+                        nbt.putShort(key, ((Number) value).shortValue());
+                    } else {
+                        nbt.putShort(key, Short.parseShort(String.valueOf(value)));
+                    }
+                    break;
+                case "int":
+                case "integer":
+                    if (value instanceof Number) {
+                        nbt.putInt(key, ((Number) value).intValue());
+                    } else {
+                        nbt.putInt(key, Integer.parseInt(String.valueOf(value)));
+                    }
+                    break;
+                case "long":
+                    if (value instanceof Number) {
+                        nbt.putLong(key, ((Number) value).longValue());
+                    } else {
+                        nbt.putLong(key, Long.parseLong(String.valueOf(value)));
+                    }
+                    break;
+                case "float":
+                    if (value instanceof Number) {
+                        nbt.putFloat(key, ((Number) value).floatValue());
+                    } else {
+                        nbt.putFloat(key, Float.parseFloat(String.valueOf(value)));
+                    }
+                    break;
+                case "double":
+                    if (value instanceof Number) {
+                        nbt.putDouble(key, ((Number) value).doubleValue());
+                    } else {
+                        nbt.putDouble(key, Double.parseDouble(String.valueOf(value)));
+                    }
+                    break;
+                case "string":
+                    nbt.putString(key, String.valueOf(value));
+                    break;
+                case "boolean":
+                case "bool":
+                    if (value instanceof Boolean) {
+                        nbt.putBoolean(key, (Boolean) value);
+                    } else {
+                        nbt.putBoolean(key, Boolean.parseBoolean(String.valueOf(value)));
+                    }
+                    break;
+                default:
+                    // 未知类型，默认为字符串
+                    nbt.putString(key, String.valueOf(value));
+                    break;
+            }
+        } catch (NumberFormatException e) {
+            // 解析失败，使用字符串类型
+            nbt.putString(key, String.valueOf(value));
+        }
+    }
+
+    /**
+     * 自动推断类型并应用NBT值（保持向后兼容）
+     */
+    private static void applyAutoTypedNbtValue(CompoundTag nbt, String key, Object value) {
+        if (value instanceof Boolean) {
+            nbt.putBoolean(key, (Boolean) value);
+        } else if (value instanceof Integer) {
+            nbt.putInt(key, (Integer) value);
+        } else if (value instanceof Long) {
+            nbt.putLong(key, (Long) value);
+        } else if (value instanceof Float) {
+            nbt.putFloat(key, (Float) value);
+        } else if (value instanceof Double) {
+            nbt.putDouble(key, (Double) value);
+        } else {
+            nbt.putString(key, String.valueOf(value));
+        }
+    }
+
+    /**
+     * 原型中需要按节点结果补写的位置
+     */
+    private static final class Patch {
+        /** 从根标签到所在容器的路径，String 为复合标签的键，Integer 为列表下标 */
+        final Object[] path;
+        final String key;
+        final int index;
+        final int mode;
+        final String type;
+        final int valueOffset;
+        final Object value;
+
+        Patch(List<Object> path, String key, int index, int mode, String type, int valueOffset, Object value) {
+            this.path = path.toArray();
+            this.key = key;
+            this.index = index;
+            this.mode = mode;
+            this.type = type;
+            this.valueOffset = valueOffset;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.yirankuma.yritems;
+
+import com.yirankuma.yritems.node.EvalContext;
+import com.yirankuma.yritems.node.NodePlan;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 预解析的占位符模板
+ * 加载时把文本拆成字面量和类型化的引用片段，生成物品时单次遍历拼接
+ * 支持 &lt;id&gt; &lt;id.0&gt; &lt;id.length&gt; &lt;id.else.0&gt; &lt;id.else.length&gt;
+ * 引用在 {@link #link} 时解析为节点计划中的槽位，渲染时不再按名称查找
+ */
+final class PlaceholderTemplate {
+    static final Pattern PLACEHOLDER = Pattern.compile("<([a-zA-Z0-9_-]+)(?:\\.([a-zA-Z0-9_]+))?(?:\\.([a-zA-Z0-9_]+))?>");
+
+    /** 引用类型 */
+    private static final int VALUE = 0;
+    private static final int LENGTH = 1;
+    private static final int INDEX = 2;
+    private static final int ELSE_LENGTH = 3;
+    private static final int ELSE_INDEX = 4;
+
+    private final String text;
+    /** 片段：literals[i] 之后紧跟第 i 个引用，最后一个字面量在 literals[refs.length] */
+    private final String[] literals;
+    private final String[] ids;
+    private final int[] kinds;
+    private final int[] indexes;
+    /** 节点结果缺失时原样输出的占位符文本 */
+    private final String[] raws;
+    /** 最近一次链接的计划及各引用的槽位 */
+    private volatile Binding binding;
+
+    private PlaceholderTemplate(String text, List<String> literals, List<String> ids,
+                                List<Integer> kinds, List<Integer> indexes, List<String> raws) {
+        this.text = text;
+        this.literals = literals.toArray(new String[0]);
+        this.ids = ids.toArray(new String[0]);
+        this.raws = raws.toArray(new String[0]);
+        this.kinds = new int[kinds.size()];
+        this.indexes = new int[indexes.size()];
+        for (int i = 0; i < this.kinds.length; i++) {
+            this.kinds[i] = kinds.get(i);
+            this.indexes[i] = indexes.get(i);
+        }
+    }
+
+    static PlaceholderTemplate compile(String text) {
+        List<String> literals = new ArrayList<>();
+        List<String> ids = new ArrayList<>();
+        List<Integer> kinds = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        List<String> raws = new ArrayList<>();
+        if (text != null && !text.isEmpty()) {
+            Matcher m = PLACEHOLDER.matcher(text);
+            int last = 0;
+            while (m.find()) {
+                literals.add(text.substring(last, m.start()));
+                ids.add(m.group(1));
+                raws.add(m.group(0));
+                String part1 = m.group(2);
+                String part2 = m.group(3);
+                if (part1 == null) {
+                    kinds.add(VALUE);
+                    indexes.add(-1);
+                } else if ("length".equalsIgnoreCase(part1)) {
+                    kinds.add(LENGTH);
+                    indexes.add(-1);
+                } else if ("else".equalsIgnoreCase(part1)) {
+                    if (part2 == null || "length".equalsIgnoreCase(part2)) {
+                        kinds.add(ELSE_LENGTH);
+                        indexes.add(-1);
+                    } else {
+                        kinds.add(ELSE_INDEX);
+                        indexes.add(safeIndex(part2));
+                    }
+                } else {
+                    kinds.add(INDEX);
+                    indexes.add(safeIndex(part1));
+                }
+                last = m.end();
+            }
+            literals.add(text.substring(last));
+        }
+        return new PlaceholderTemplate(text, literals, ids, kinds, indexes, raws);
+    }
+
+    /**
+     * 不含占位符的模板，渲染时直接返回原文本
+     */
+    boolean isStatic() {
+        return ids.length == 0;
+    }
+
+    String getText() {
+        return text;
+    }
+
+    /**
+     * 第一个引用之前的字面量
+     */
+    String getLeadingLiteral() {
+        return literals.length > 0 ? literals[0] : "";
+    }
+
+    void collectReferences(Set<String> out) {
+        for (String id : ids) out.add(id);
+    }
+
+    /**
+     * 把引用解析为计划中的槽位，计划变更后需重新链接
+     */
+    void link(NodePlan plan) {
+        int[] slots = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) slots[i] = plan.slotOf(ids[i]);
+        this.binding = new Binding(plan, slots);
+    }
+
+    /**
+     * 渲染模板
+     * @param ctx 节点结果，缺失的引用保留原占位符
+     * @param buf 复用的缓冲区，调用后内容不保证
+     */
+    String render(EvalContext ctx, StringBuilder buf) {
+        if (ids.length == 0 || ctx == null) return text;
+        Binding b = binding;
+        // 未链接到该计划时 (如重载过程中) 退回按名称查找
+        int[] slots = b != null && b.plan == ctx.getPlan() ? b.slots : null;
+        buf.setLength(0);
+        for (int i = 0; i < ids.length; i++) {
+            buf.append(literals[i]);
+            int slot = slots != null ? slots[i] : ctx.slotOf(ids[i]);
+            if (!ctx.has(slot)) {
+                buf.append(raws[i]);
+                continue;
+            }
+            String element;
+            switch (kinds[i]) {
+                case VALUE:
+                    buf.append(ctx.getString(slot));
+                    break;
+                case LENGTH:
+                    buf.append(ctx.getLength(slot));
+                    break;
+                case ELSE_LENGTH:
+                    buf.append(ctx.getElseLength(slot));
+                    break;
+                case ELSE_INDEX:
+                    element = ctx.getElseElement(slot, indexes[i]);
+                    if (element != null) buf.append(element);
+                    break;
+                default:
+                    element = ctx.getElement(slot, indexes[i]);
+                    if (element != null) buf.append(element);
+                    break;
+            }
+        }
+        buf.append(literals[ids.length]);
+        return buf.toString();
+    }
+
+    private static int safeIndex(String s) {
+        try { return Integer.parseInt(s); } catch (Exception e) { return -1; }
+    }
+
+    private static final class Binding {
+        final NodePlan plan;
+        final int[] slots;
+
+        Binding(NodePlan plan, int[] slots) {
+            this.plan = plan;
+            this.slots = slots;
+        }
+    }
+}
@@ -3,6 +3,8 @@ package com.yirankuma.yritems;
 import cn.nukkit.plugin.PluginBase;
 import com.yirankuma.yritems.command.YRItemsCommand;
 import com.yirankuma.yritems.config.CustomConfigManager;
+import com.yirankuma.yritems.listener.SentSlotCache;
+import com.yirankuma.yritems.lore.DynamicLoreRenderer;
 
 public class YRItems extends PluginBase {
 
@@ -10,6 +12,8 @@ public class YRItems extends PluginBase {
     private ItemConfig itemConfig;
     private CustomConfigManager customConfigManager;
     private com.yirankuma.yritems.script.ItemsScriptEngineManager scriptEngine;
+    private DynamicLoreRenderer dynamicLoreRenderer;
+    private SentSlotCache sentSlotCache;
 
     public static YRItems getInstance() {
         return instance;
@@ -26,6 +30,14 @@ public class YRItems extends PluginBase {
         getServer().getPluginManager().registerEvents(
             new com.yirankuma.yritems.listener.PacketReceiveListener(this), this);
 
+        // 注册数据包发送监听器（发送前展开种子紧凑编码的物品、渲染动态Lore）
+        getServer().getPluginManager().registerEvents(
+            new com.yirankuma.yritems.listener.PacketSendListener(this), this);
+
+        // 已发送槽位缓存（玩家退出、关闭窗口时清理）
+        this.sentSlotCache = new SentSlotCache();
+        getServer().getPluginManager().registerEvents(sentSlotCache, this);
+
         // 初始化BinaryStreamHook
         com.yirankuma.yritems.hook.BinaryStreamHook.init(this);
 
@@ -36,11 +48,17 @@ public class YRItems extends PluginBase {
         this.customConfigManager = new CustomConfigManager(this);
         this.customConfigManager.loadAllConfigs();
 
+        // 编译动态Lore显示规则
+        this.dynamicLoreRenderer = new DynamicLoreRenderer(this);
+        this.dynamicLoreRenderer.reload();
+        this.dynamicLoreRenderer.startWatching();
+
         // 初始化脚本引擎
         this.scriptEngine = new com.yirankuma.yritems.script.ItemsScriptEngineManager(this);
 
         // 自动加载所有脚本
         this.scriptEngine.loadAllScripts();
+        this.itemConfig.bindScripts(scriptEngine);
 
         // 注册命令
         this.getServer().getCommandMap().register("yritems", new YRItemsCommand(this));
@@ -50,6 +68,7 @@ public class YRItems extends PluginBase {
 
     @Override
     public void onDisable() {
+        if (dynamicLoreRenderer != null) dynamicLoreRenderer.stopWatching();
         if (scriptEngine != null) scriptEngine.unload();
         getLogger().info("YRItems插件已禁用！");
     }
@@ -66,6 +85,14 @@ public class YRItems extends PluginBase {
         return scriptEngine;
     }
 
+    public DynamicLoreRenderer getDynamicLoreRenderer() {
+        return dynamicLoreRenderer;
+    }
+
+    public SentSlotCache getSentSlotCache() {
+        return sentSlotCache;
+    }
+
     /**
      * 重载插件配置和脚本
      */
@@ -84,6 +111,13 @@ public class YRItems extends PluginBase {
         if (customConfigManager != null) {
             customConfigManager.reloadAllConfigs();
         }
+        if (dynamicLoreRenderer != null) {
+            dynamicLoreRenderer.reload();
+        }
+        // 物品模板或显示规则可能已变化，已发送的改写结果全部作废
+        if (sentSlotCache != null) {
+            sentSlotCache.clear();
+        }
 
         // 4. 卸载旧脚本
         if (scriptEngine != null) {
@@ -93,6 +127,7 @@ public class YRItems extends PluginBase {
         // 5. 重新初始化脚本引擎
         this.scriptEngine = new com.yirankuma.yritems.script.ItemsScriptEngineManager(this);
         this.scriptEngine.loadAllScripts();
+        this.itemConfig.bindScripts(scriptEngine);
 
         getLogger().info("YRItems插件重载完成！");
     }
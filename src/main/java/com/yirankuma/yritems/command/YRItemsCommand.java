@@ -19,7 +19,7 @@ public class YRItemsCommand extends Command {
     private static final int ITEMS_PER_PAGE = 10;
     
     public YRItemsCommand(YRItems plugin) {
-        super("yritems", "YRItems插件命令", "/yritems <list|get|give|tags|nbt> [参数]", new String[]{"yri"});
+        super("yritems", "YRItems插件命令", "/yritems <list|get|give|tags|nbt|stats> [参数]", new String[]{"yri"});
         this.plugin = plugin;
         this.setPermission("yritems.command");
     }
@@ -46,6 +46,8 @@ public class YRItemsCommand extends Command {
                 return handleGiveCommand(sender, args);
             case "reload":
                 return handleReloadCommand(sender);
+            case "stats":
+                return handleStatsCommand(sender);
             case "tags":
             case "nbt":
                 return handleTagsCommand(sender, args);
@@ -59,9 +61,10 @@ public class YRItemsCommand extends Command {
         sender.sendMessage(TextFormat.YELLOW + "=== YRItems 命令帮助 ===");
         sender.sendMessage(TextFormat.GREEN + "/yritems list [页码] " + TextFormat.WHITE + "- 显示所有物品列表");
         sender.sendMessage(TextFormat.GREEN + "/yritems get <物品ID> " + TextFormat.WHITE + "- 获取指定物品");
-        sender.sendMessage(TextFormat.GREEN + "/yritems give <玩家> <物品ID> [数量] " + TextFormat.WHITE + "- 给予玩家物品");
+        sender.sendMessage(TextFormat.GREEN + "/yritems give <玩家> <物品ID> [数量] [compact] " + TextFormat.WHITE + "- 给予玩家物品，compact 为种子紧凑编码");
         sender.sendMessage(TextFormat.GREEN + "/yritems tags/nbt " + TextFormat.WHITE + "- 显示手持物品的NBT数据");
         sender.sendMessage(TextFormat.GREEN + "/yritems reload " + TextFormat.WHITE + "- 重载配置文件");
+        sender.sendMessage(TextFormat.GREEN + "/yritems stats " + TextFormat.WHITE + "- 显示缓存统计");
     }
     
     private boolean handleListCommand(CommandSender sender, String[] args) {
@@ -145,13 +148,14 @@ public class YRItemsCommand extends Command {
     
     private boolean handleGiveCommand(CommandSender sender, String[] args) {
         if (args.length < 3) {
-            sender.sendMessage(TextFormat.RED + "用法: /yritems give <玩家> <物品ID> [数量]");
+            sender.sendMessage(TextFormat.RED + "用法: /yritems give <玩家> <物品ID> [数量] [compact]");
             return true;
         }
         
         String playerName = args[1];
         String itemId = args[2];
         int amount = 1;
+        boolean compact = args.length > 4 && "compact".equalsIgnoreCase(args[4]);
         
         if (args.length > 3) {
             try {
@@ -178,12 +182,14 @@ public class YRItemsCommand extends Command {
             return true;
         }
         
-        Item item = itemData.toItem(amount); // 直接使用ItemData的toItem方法并指定数量
+        Item item = compact ? itemData.toCompactItem(amount) : itemData.toItem(amount);
 
         if (target.getInventory().canAddItem(item)) {
             target.getInventory().addItem(item);
-            // 从实际的Item对象获取已替换占位符后的名称
-            String displayName = item.hasCustomName() ? item.getCustomName() : item.getName();
+            // 从实际的Item对象获取已替换占位符后的名称，紧凑物品先展开
+            Item shown = compact ? plugin.getItemConfig().getCompactCodec().expand(item) : null;
+            if (shown == null) shown = item;
+            String displayName = shown.hasCustomName() ? shown.getCustomName() : shown.getName();
             sender.sendMessage(TextFormat.GREEN + "成功给予 " + target.getName() + " " + amount + "个 " + displayName);
             target.sendMessage(TextFormat.GREEN + "你收到了 " + amount + "个 " + TextFormat.RESET + displayName);
         } else {
@@ -203,6 +209,24 @@ public class YRItemsCommand extends Command {
         return true;
     }
     
+    private boolean handleStatsCommand(CommandSender sender) {
+        sender.sendMessage(TextFormat.YELLOW + "=== YRItems 缓存统计 ===");
+        if (plugin.getScriptEngine() != null) {
+            sender.sendMessage(TextFormat.WHITE + plugin.getScriptEngine().getExpressionCacheStats());
+            sender.sendMessage(TextFormat.WHITE + plugin.getScriptEngine().getPureCacheStats());
+        }
+        if (plugin.getItemConfig() != null) {
+            sender.sendMessage(TextFormat.WHITE + plugin.getItemConfig().getCompactCodec().getStats());
+        }
+        if (plugin.getDynamicLoreRenderer() != null) {
+            sender.sendMessage(TextFormat.WHITE + plugin.getDynamicLoreRenderer().getStats());
+        }
+        if (plugin.getSentSlotCache() != null) {
+            sender.sendMessage(TextFormat.WHITE + plugin.getSentSlotCache().getStats());
+        }
+        return true;
+    }
+
     private boolean handleTagsCommand(CommandSender sender, String[] args) {
         if (!(sender instanceof Player)) {
             sender.sendMessage(TextFormat.RED + "此命令只能由玩家执行！");
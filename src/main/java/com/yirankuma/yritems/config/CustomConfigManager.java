@@ -7,6 +7,7 @@ import org.yaml.snakeyaml.Yaml;
 import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 自定义配置文件管理器
@@ -16,7 +17,8 @@ public class CustomConfigManager {
 
     private final YRItems plugin;
     private final File configsDir;
-    private final Map<String, Config> loadedConfigs = new HashMap<>();
+    /** 显示规则监视线程也会更新，使用并发Map */
+    private final Map<String, Config> loadedConfigs = new ConcurrentHashMap<>();
 
     public CustomConfigManager(YRItems plugin) {
         this.plugin = plugin;
@@ -77,6 +79,23 @@ public class CustomConfigManager {
         loadAllConfigs();
     }
 
+    /**
+     * 重新读取单个配置文件
+     * 文件已不存在时移除该配置
+     */
+    public void reloadConfig(String fileName) {
+        File file = new File(configsDir, fileName);
+        if (!file.exists()) {
+            loadedConfigs.remove(fileName);
+            return;
+        }
+        try {
+            loadedConfigs.put(fileName, new Config(file, Config.YAML));
+        } catch (Exception e) {
+            plugin.getLogger().warning("加载配置文件失败: " + fileName + " - " + e.getMessage());
+        }
+    }
+
     /**
      * 获取指定配置文件
      * @param fileName 文件名（如 "display_rules.yml"）
@@ -15,12 +15,19 @@ import com.yirankuma.yritems.YRItems;
  * 5. MOT验证时物品NBT与服务器原始数据一致，验证通过
  *
  * 关键：这个处理必须在 MOT 的 BinaryStream.getSlot() 之前完成
+ *
+ * 只在处理客户端数据包时清理：数据包接收监听器通过 {@link #enterPacketScope()} 标明当前线程正在处理数据包。
+ * 在该范围之外 (如其他插件或脚本) 调用 {@link #removeDynamicLoreIfMarked(Item)} 不做任何处理，直接返回 false
  */
 public class BinaryStreamHook {
 
     /** 动态Lore标记键 */
     public static final String DYNAMIC_LORE_MARKER = "_DynamicLore";
 
+    /** 当前线程进入数据包处理范围的层数 */
+    private static final ThreadLocal<int[]> PACKET_DEPTH = ThreadLocal.withInitial(() -> new int[1]);
+    private static final PacketScope PACKET_SCOPE = new PacketScope();
+
     private static YRItems plugin;
 
     /**
@@ -31,6 +38,40 @@ public class BinaryStreamHook {
         plugin.getLogger().info("动态Lore反作弊兼容已启用");
     }
 
+    /**
+     * 进入数据包处理范围，必须在 finally 中关闭：
+     * <pre>
+     * BinaryStreamHook.PacketScope scope = BinaryStreamHook.enterPacketScope();
+     * try { ... } finally { scope.close(); }
+     * </pre>
+     * 范围内调用 {@link #removeDynamicLoreIfMarked(Item)} 才会清理物品
+     */
+    public static PacketScope enterPacketScope() {
+        PACKET_DEPTH.get()[0]++;
+        return PACKET_SCOPE;
+    }
+
+    /**
+     * 当前线程是否正在处理数据包
+     */
+    public static boolean isInPacketScope() {
+        return PACKET_DEPTH.get()[0] > 0;
+    }
+
+    /**
+     * 数据包处理范围，关闭时退出
+     */
+    public static final class PacketScope implements AutoCloseable {
+        private PacketScope() {
+        }
+
+        @Override
+        public void close() {
+            int[] depth = PACKET_DEPTH.get();
+            if (depth[0] > 0) depth[0]--;
+        }
+    }
+
     /**
      * 检查物品是否应该添加动态Lore标记
      */
@@ -65,7 +106,7 @@ public class BinaryStreamHook {
 
     /**
      * 移除物品的动态Lore和标记
-     * 在接收客户端数据包时调用
+     * 在接收客户端数据包时调用，不在数据包处理范围内时不做处理
      *
      * @param item 物品
      * @return 是否进行了处理
@@ -86,24 +127,8 @@ public class BinaryStreamHook {
             return false;
         }
 
-        // 检查调用堆栈，只在处理数据包时才清理
-        StackTraceElement[] stack = Thread.currentThread().getStackTrace();
-        boolean isFromPacket = false;
-
-        for (StackTraceElement element : stack) {
-            String className = element.getClassName();
-            // 检查是否来自数据包处理
-            if (className.contains("DataPacket") ||
-                className.contains("InventoryTransaction") ||
-                className.contains("NetworkInventoryAction") ||
-                className.contains("PacketReceiveListener")) {
-                isFromPacket = true;
-                break;
-            }
-        }
-
-        // 如果不是来自数据包处理，不要清理
-        if (!isFromPacket) {
+        // 只在处理数据包时才清理
+        if (!isInPacketScope()) {
             return false;
         }
 
@@ -10,6 +10,7 @@ import cn.nukkit.network.protocol.InventoryTransactionPacket;
 import cn.nukkit.network.protocol.MobEquipmentPacket;
 import cn.nukkit.network.protocol.PlayerActionPacket;
 import cn.nukkit.network.protocol.types.NetworkInventoryAction;
+import com.yirankuma.yritems.CompactItemCodec;
 import com.yirankuma.yritems.YRItems;
 import com.yirankuma.yritems.hook.BinaryStreamHook;
 
@@ -45,13 +46,13 @@ public class PacketReceiveListener implements Listener {
                 // 获取服务器端该槽位的实际物品
                 Item serverItem = player.getInventory().getItem(slot);
 
-                // 检查是否是动态Lore物品
+                // 检查是否是动态Lore物品或紧凑物品
                 boolean useDynamicLore = serverItem != null &&
                         serverItem.hasCompoundTag() &&
                         serverItem.getNamedTag().contains("UseDynamicLore") &&
                         serverItem.getNamedTag().getByte("UseDynamicLore") == 1;
 
-                if (useDynamicLore) {
+                if (useDynamicLore || CompactItemCodec.isCompact(serverItem)) {
                     // 关键步骤：用服务器端的物品（无动态Lore）替换客户端发来的物品（有动态Lore）
                     // 这样 MOT 核心的反作弊检测就会通过
                     mobPacket.item = serverItem;
@@ -75,6 +76,8 @@ public class PacketReceiveListener implements Listener {
 
         InventoryTransactionPacket transactionPacket = (InventoryTransactionPacket) packet;
 
+        // 标明正在处理数据包，动态Lore标记只在此范围内清理
+        BinaryStreamHook.PacketScope scope = BinaryStreamHook.enterPacketScope();
         try {
             // 获取所有物品操作
             NetworkInventoryAction[] actions = transactionPacket.actions;
@@ -91,7 +94,9 @@ public class PacketReceiveListener implements Listener {
                     // 尝试获取并处理oldItem字段
                     Item oldItem = action.oldItem;
                     if (oldItem != null) {
-                        if (BinaryStreamHook.removeDynamicLoreIfMarked(oldItem)) {
+                        if (CompactItemCodec.restoreIfExpanded(oldItem)) {
+                            anyModified = true;
+                        } else if (BinaryStreamHook.removeDynamicLoreIfMarked(oldItem)) {
                             anyModified = true;
                         }
                     }
@@ -101,7 +106,9 @@ public class PacketReceiveListener implements Listener {
                     // 尝试获取并处理newItem字段
                     Item newItem = action.newItem;
                     if (newItem != null) {
-                        if (BinaryStreamHook.removeDynamicLoreIfMarked(newItem)) {
+                        if (CompactItemCodec.restoreIfExpanded(newItem)) {
+                            anyModified = true;
+                        } else if (BinaryStreamHook.removeDynamicLoreIfMarked(newItem)) {
                             anyModified = true;
                         }
                     }
@@ -117,6 +124,8 @@ public class PacketReceiveListener implements Listener {
             if (plugin.getConfig().getBoolean("debug", false)) {
                 e.printStackTrace();
             }
+        } finally {
+            scope.close();
         }
     }
 }
@@ -0,0 +1,149 @@
+package com.yirankuma.yritems.listener;
+
+import cn.nukkit.Player;
+import cn.nukkit.event.EventHandler;
+import cn.nukkit.event.EventPriority;
+import cn.nukkit.event.Listener;
+import cn.nukkit.event.server.DataPacketSendEvent;
+import cn.nukkit.item.Item;
+import cn.nukkit.network.protocol.DataPacket;
+import cn.nukkit.network.protocol.InventoryContentPacket;
+import cn.nukkit.network.protocol.InventorySlotPacket;
+import com.yirankuma.yritems.CompactItemCodec;
+import com.yirankuma.yritems.YRItems;
+import com.yirankuma.yritems.lore.DisplayRules;
+import com.yirankuma.yritems.lore.DynamicLoreRenderer;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * 数据包发送监听器
+ * 把种子紧凑编码的物品展开为完整物品，再由内置渲染器生成动态Lore后发送给客户端
+ * 优先级为NORMAL，在动态Lore脚本 (HIGH) 之前执行；内置渲染器停用时展开后的物品仍可由脚本渲染
+ * 发送整个窗口时，与上次发送相比未变化的槽位复用上次的结果，见 {@link SentSlotCache}
+ *
+ * 同一个窗口数据包会依次发给该窗口的每个查看者，因此不在原数组上改写：
+ * 改写结果放入新数组，并记录新数组对应的服务器端物品，发给下一个查看者时仍从服务器端物品处理
+ */
+public class PacketSendListener implements Listener {
+
+    private final YRItems plugin;
+    /** 改写后的槽位数组 -> 服务器端的槽位数组，数组按引用比较，随数据包一起回收 */
+    private final Map<Item[], Item[]> originals = Collections.synchronizedMap(new WeakHashMap<Item[], Item[]>());
+
+    public PacketSendListener(YRItems plugin) {
+        this.plugin = plugin;
+    }
+
+    @EventHandler(priority = EventPriority.NORMAL, ignoreCancelled = true)
+    public void onPacketSend(DataPacketSendEvent event) {
+        DataPacket packet = event.getPacket();
+        if (!(packet instanceof InventoryContentPacket || packet instanceof InventorySlotPacket)) {
+            return;
+        }
+        if (plugin.getItemConfig() == null) {
+            return;
+        }
+        CompactItemCodec codec = plugin.getItemConfig().getCompactCodec();
+        DynamicLoreRenderer renderer = plugin.getDynamicLoreRenderer();
+
+        try {
+            if (packet instanceof InventoryContentPacket) {
+                InventoryContentPacket contentPacket = (InventoryContentPacket) packet;
+                Item[] items = contentPacket.slots;
+                if (items == null) {
+                    return;
+                }
+                Item[] source = originals.get(items);
+                if (source == null) {
+                    source = items;
+                }
+                Item[] out = new Item[source.length];
+                SentSlotCache sentSlots = plugin.getSentSlotCache();
+                if (sentSlots == null || event.getPlayer() == null
+                        || !prepareWindow(codec, renderer, sentSlots, event.getPlayer(), contentPacket.inventoryId, source, out)) {
+                    for (int i = 0; i < source.length; i++) {
+                        out[i] = prepare(codec, renderer, source[i]);
+                    }
+                }
+                contentPacket.slots = out;
+                originals.put(out, source);
+            } else {
+                InventorySlotPacket slotPacket = (InventorySlotPacket) packet;
+                slotPacket.item = prepare(codec, renderer, slotPacket.item);
+            }
+        } catch (Exception e) {
+            plugin.getLogger().error("处理发送的物品失败: " + e.getMessage());
+            if (plugin.getConfig().getBoolean("debug", false)) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * 处理整个窗口的物品，指纹与上次发送相同的槽位直接复用上次的结果
+     * 缓存的物品不直接放入数据包，之后的处理可能修改数据包中的物品
+     * @param source 服务器端的物品
+     * @param out 发送给客户端的物品
+     * @return 该玩家不能使用缓存时返回 false，物品未被处理
+     */
+    private static boolean prepareWindow(CompactItemCodec codec, DynamicLoreRenderer renderer, SentSlotCache sentSlots,
+                                      Player player, int windowId, Item[] source, Item[] out) {
+        DisplayRules rules = renderer != null ? renderer.getRules() : null;
+        int rulesVersion = rules != null ? rules.getVersion() : 0;
+        SentSlotCache.Slot[] table = sentSlots.window(player, windowId, source.length, rulesVersion);
+        if (table == null) {
+            return false;
+        }
+        int hits = 0;
+        int misses = 0;
+        for (int i = 0; i < source.length; i++) {
+            Item item = source[i];
+            out[i] = item;
+            // 没有 NBT 的物品无需改写
+            if (item == null || item.getId() == 0 || !item.hasCompoundTag()) {
+                table[i] = null;
+                continue;
+            }
+            long fingerprint = SentSlotCache.fingerprint(item, rulesVersion);
+            SentSlotCache.Slot slot = table[i];
+            if (slot != null && slot.fingerprint == fingerprint) {
+                hits++;
+                if (slot.sent != null) {
+                    out[i] = slot.sent.clone();
+                }
+                continue;
+            }
+            misses++;
+            Item sent = prepare(codec, renderer, item);
+            if (sent != item) {
+                table[i] = new SentSlotCache.Slot(fingerprint, sent);
+                out[i] = sent.clone();
+            } else {
+                table[i] = new SentSlotCache.Slot(fingerprint, null);
+            }
+        }
+        sentSlots.record(hits, misses);
+        return true;
+    }
+
+    /**
+     * 展开紧凑物品并渲染动态Lore
+     * @return 发送给客户端的物品，无需处理时返回原物品
+     */
+    private static Item prepare(CompactItemCodec codec, DynamicLoreRenderer renderer, Item item) {
+        Item expanded = codec.expandForClient(item);
+        if (expanded != null) {
+            item = expanded;
+        }
+        if (renderer != null) {
+            Item rendered = renderer.process(item);
+            if (rendered != null) {
+                item = rendered;
+            }
+        }
+        return item;
+    }
+}
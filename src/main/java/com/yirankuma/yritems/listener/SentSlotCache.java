@@ -0,0 +1,126 @@
+package com.yirankuma.yritems.listener;
+
+import cn.nukkit.Player;
+import cn.nukkit.event.EventHandler;
+import cn.nukkit.event.EventPriority;
+import cn.nukkit.event.Listener;
+import cn.nukkit.event.inventory.InventoryCloseEvent;
+import cn.nukkit.event.player.PlayerQuitEvent;
+import cn.nukkit.item.Item;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 已发送槽位缓存
+ * 按 玩家 -> 窗口 -> 槽位 记录上次发送时服务器端物品的指纹和改写后的物品；
+ * 再次发送整个窗口 (InventoryContentPacket) 时，指纹相同的槽位直接复用改写结果，不再展开和渲染
+ *
+ * 指纹包含物品ID、数据值、数量、NBT 原始字节和显示规则版本。
+ * 玩家退出、关闭窗口时清理对应的表，显示规则版本变化时整张表作废，插件重载时全部清空
+ */
+public class SentSlotCache implements Listener {
+
+    private final Map<UUID, PlayerSlots> players = new ConcurrentHashMap<>();
+    private long hits;
+    private long misses;
+
+    /**
+     * 取得玩家某个窗口的槽位表，长度与本次发送的槽位数一致
+     * 表中的元素可直接读写：每个元素都是不可变对象
+     * @return 玩家尚未完成登录 (没有 UUID) 时返回 null，不做缓存
+     */
+    Slot[] window(Player player, int windowId, int size, int rulesVersion) {
+        UUID uuid = player.getUniqueId();
+        if (uuid == null) return null;
+        PlayerSlots slots = players.computeIfAbsent(uuid, k -> new PlayerSlots());
+        synchronized (slots) {
+            if (slots.rulesVersion != rulesVersion) {
+                slots.windows.clear();
+                slots.rulesVersion = rulesVersion;
+            }
+            Slot[] table = slots.windows.get(windowId);
+            if (table == null || table.length != size) {
+                table = new Slot[size];
+                slots.windows.put(windowId, table);
+            }
+            return table;
+        }
+    }
+
+    /**
+     * 服务器端物品的指纹
+     */
+    static long fingerprint(Item item, int rulesVersion) {
+        long h = 0xcbf29ce484222325L;
+        h = (h ^ item.getId()) * 0x100000001b3L;
+        h = (h ^ item.getDamage()) * 0x100000001b3L;
+        h = (h ^ item.getCount()) * 0x100000001b3L;
+        h = (h ^ rulesVersion) * 0x100000001b3L;
+        byte[] tags = item.getCompoundTag();
+        if (tags != null) {
+            for (byte b : tags) {
+                h = (h ^ (b & 0xff)) * 0x100000001b3L;
+            }
+        }
+        return h;
+    }
+
+    synchronized void record(int hitCount, int missCount) {
+        hits += hitCount;
+        misses += missCount;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        UUID uuid = event.getPlayer().getUniqueId();
+        if (uuid != null) players.remove(uuid);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onInventoryClose(InventoryCloseEvent event) {
+        Player player = event.getPlayer();
+        UUID uuid = player.getUniqueId();
+        PlayerSlots slots = uuid != null ? players.get(uuid) : null;
+        if (slots == null) return;
+        int windowId = player.getWindowId(event.getInventory());
+        synchronized (slots) {
+            slots.windows.remove(windowId);
+        }
+    }
+
+    /**
+     * 清空所有玩家的记录，物品配置或显示规则重载时调用
+     */
+    public void clear() {
+        players.clear();
+    }
+
+    public synchronized String getStats() {
+        long total = hits + misses;
+        double rate = total == 0 ? 0 : hits * 100.0 / total;
+        return String.format("已发送槽位缓存: 玩家 %d, 命中 %d, 未命中 %d, 命中率 %.1f%%",
+                players.size(), hits, misses, rate);
+    }
+
+    /**
+     * 槽位记录
+     */
+    static final class Slot {
+        final long fingerprint;
+        /** 改写后的物品，无需改写时为 null；只放入其克隆，本身不进入数据包 */
+        final Item sent;
+
+        Slot(long fingerprint, Item sent) {
+            this.fingerprint = fingerprint;
+            this.sent = sent;
+        }
+    }
+
+    private static final class PlayerSlots {
+        int rulesVersion;
+        final Map<Integer, Slot[]> windows = new HashMap<>();
+    }
+}
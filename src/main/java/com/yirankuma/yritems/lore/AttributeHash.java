@@ -0,0 +1,101 @@
+package com.yirankuma.yritems.lore;
+
+import cn.nukkit.nbt.tag.CompoundTag;
+import cn.nukkit.nbt.tag.ListTag;
+import cn.nukkit.nbt.tag.Tag;
+
+import java.util.Map;
+
+/**
+ * YRAttributes 标签的 64 位内容哈希
+ * 相同内容的标签哈希相同，与复合标签中键的存放顺序无关；标签类型参与计算 (5 和 5.0 渲染结果不同)
+ */
+final class AttributeHash {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private AttributeHash() {
+    }
+
+    static long of(CompoundTag tag) {
+        return hash(tag);
+    }
+
+    private static long hash(Tag tag) {
+        long h = mix(tag.getId());
+        if (tag instanceof CompoundTag) {
+            // 各项相加，不依赖遍历顺序
+            long sum = 0;
+            for (Map.Entry<String, Tag> entry : ((CompoundTag) tag).getTags().entrySet()) {
+                sum += mix(string(entry.getKey()) * 31 + hash(entry.getValue()));
+            }
+            return mix(h + sum);
+        }
+        if (tag instanceof ListTag) {
+            ListTag<?> list = (ListTag<?>) tag;
+            for (int i = 0; i < list.size(); i++) {
+                h = mix(h * 31 + hash(list.get(i)));
+            }
+            return h;
+        }
+        Object value = tag.parseValue();
+        long v;
+        if (value instanceof Double || value instanceof Float) {
+            v = Double.doubleToLongBits(((Number) value).doubleValue());
+        } else if (value instanceof Number) {
+            v = ((Number) value).longValue();
+        } else if (value instanceof String) {
+            v = string((String) value);
+        } else if (value instanceof byte[]) {
+            v = bytes((byte[]) value);
+        } else if (value instanceof int[]) {
+            v = ints((int[]) value);
+        } else {
+            v = string(String.valueOf(value));
+        }
+        return mix(h * 31 + v);
+    }
+
+    /**
+     * 字符串的 FNV-1a 64 位哈希
+     */
+    private static long string(String s) {
+        long h = FNV_OFFSET;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+
+    /**
+     * 字节数组逐个元素混合的 64 位哈希，长度也参与计算
+     */
+    private static long bytes(byte[] a) {
+        long h = mix(a.length);
+        for (byte b : a) {
+            h = mix(h * 31 + b);
+        }
+        return h;
+    }
+
+    /**
+     * 整数数组逐个元素混合的 64 位哈希，长度也参与计算
+     */
+    private static long ints(int[] a) {
+        long h = mix(a.length);
+        for (int i : a) {
+            h = mix(h * 31 + i);
+        }
+        return h;
+    }
+
+    /**
+     * SplitMix64 的混合函数
+     */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
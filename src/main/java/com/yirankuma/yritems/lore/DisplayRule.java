@@ -0,0 +1,177 @@
+package com.yirankuma.yritems.lore;
+
+import cn.nukkit.nbt.tag.CompoundTag;
+import cn.nukkit.nbt.tag.Tag;
+import org.mozilla.javascript.ScriptRuntime;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 编译后的单条显示规则 (display_rules.yml 中带 nbt_key 的一项)
+ * 值映射的输出行、范围表、格式串都在编译时准备好，渲染时只做查表和替换
+ */
+final class DisplayRule {
+    private static final String[] NO_LINES = new String[0];
+
+    final String name;
+    final String nbtKey;
+    /** 值的文本 -> 输出行，未配置 value_mappings 时为 null */
+    private final Map<String, String[]> mappings;
+    /** 未配置 value_ranges 时为 null */
+    private final Range[] ranges;
+    private final String displayFormat;
+    private final boolean plusOne;
+
+    private DisplayRule(String name, String nbtKey, Map<String, String[]> mappings, Range[] ranges, String displayFormat) {
+        this.name = name;
+        this.nbtKey = nbtKey;
+        this.mappings = mappings;
+        this.ranges = ranges;
+        this.displayFormat = displayFormat;
+        this.plusOne = displayFormat != null && displayFormat.contains("{value_plus_1}");
+    }
+
+    /**
+     * @return 不是规则 (不是映射或缺少 nbt_key) 时返回 null
+     */
+    static DisplayRule compile(String name, Object value) {
+        if (!(value instanceof Map)) return null;
+        Map<?, ?> map = (Map<?, ?>) value;
+        Object nbtKey = map.get("nbt_key");
+        if (nbtKey == null) return null;
+
+        Map<String, String[]> mappings = null;
+        Object mappingsObj = map.get("value_mappings");
+        if (mappingsObj instanceof Map) {
+            mappings = new HashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) mappingsObj).entrySet()) {
+                if (entry.getValue() == null) continue;
+                mappings.put(String.valueOf(entry.getKey()), mappingLines(entry.getValue()));
+            }
+        }
+
+        Range[] ranges = null;
+        Object rangesObj = map.get("value_ranges");
+        if (rangesObj instanceof List) {
+            List<Range> list = new ArrayList<>();
+            for (Object r : (List<?>) rangesObj) {
+                if (!(r instanceof Map)) continue;
+                Map<?, ?> range = (Map<?, ?>) r;
+                Object color = range.get("color");
+                list.add(new Range(toNumber(range.get("min")), toNumber(range.get("max")),
+                        color == null ? null : String.valueOf(color)));
+            }
+            ranges = list.toArray(new Range[0]);
+        }
+
+        Object format = map.get("display_format");
+        return new DisplayRule(name, String.valueOf(nbtKey), mappings, ranges,
+                format == null ? null : String.valueOf(format));
+    }
+
+    /**
+     * 值映射项的输出：display (或 level_text)，然后是 description
+     */
+    private static String[] mappingLines(Object mapping) {
+        if (!(mapping instanceof Map)) return NO_LINES;
+        Map<?, ?> map = (Map<?, ?>) mapping;
+        List<String> lines = new ArrayList<>(2);
+        Object display = map.get("display");
+        if (display == null) display = map.get("level_text");
+        if (display != null) lines.add(String.valueOf(display));
+        Object description = map.get("description");
+        if (description != null) lines.add(String.valueOf(description));
+        return lines.toArray(NO_LINES);
+    }
+
+    /**
+     * 按值映射、范围映射、格式串的顺序生成显示文本
+     */
+    void render(Tag value, List<String> lore) {
+        String text = text(value);
+        if (mappings != null) {
+            String[] lines = mappings.get(text);
+            if (lines != null) {
+                for (String line : lines) lore.add(line);
+                return;
+            }
+        }
+
+        double number = Double.NaN;
+        if (ranges != null) {
+            number = number(value);
+            for (Range range : ranges) {
+                if (number >= range.min && number <= range.max) {
+                    String line = displayFormat != null ? displayFormat : "{value}";
+                    line = replaceFirst(line, "{value}", text);
+                    lore.add(range.color != null ? range.color + line : line);
+                    return;
+                }
+            }
+        }
+
+        if (displayFormat != null) {
+            String line = displayFormat.replace("{value}", text);
+            if (plusOne) {
+                if (ranges == null) number = number(value);
+                if (!Double.isNaN(number)) {
+                    line = line.replace("{value_plus_1}", ScriptRuntime.numberToString(number + 1, 10));
+                }
+            }
+            lore.add(line);
+        }
+    }
+
+    /**
+     * 值的文本形式，与脚本中 String(值) 一致
+     */
+    static String text(Tag value) {
+        if (value instanceof CompoundTag) return "[object Object]";
+        return String.valueOf(value.parseValue());
+    }
+
+    /**
+     * 值拼接到字符串中的形式，与脚本中 "..." + 值 一致：数值按 JS 数字格式输出 (51.0 输出为 51)
+     */
+    static String concatText(Tag value) {
+        if (value instanceof CompoundTag) return "[object Object]";
+        Object v = value.parseValue();
+        if (v instanceof Number) return ScriptRuntime.numberToString(((Number) v).doubleValue(), 10);
+        return String.valueOf(v);
+    }
+
+    /**
+     * 值的数值形式，与脚本中 Number(值) 一致
+     */
+    static double number(Tag value) {
+        if (value instanceof CompoundTag) return Double.NaN;
+        return toNumber(value.parseValue());
+    }
+
+    private static double toNumber(Object value) {
+        if (value instanceof Number) return ((Number) value).doubleValue();
+        if (value instanceof String) return ScriptRuntime.toNumber((String) value);
+        return Double.NaN;
+    }
+
+    private static String replaceFirst(String s, String target, String replacement) {
+        int idx = s.indexOf(target);
+        if (idx < 0) return s;
+        return s.substring(0, idx) + replacement + s.substring(idx + target.length());
+    }
+
+    private static final class Range {
+        final double min;
+        final double max;
+        final String color;
+
+        Range(double min, double max, String color) {
+            this.min = min;
+            this.max = max;
+            this.color = color;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.yirankuma.yritems.lore;
+
+import cn.nukkit.nbt.tag.CompoundTag;
+import cn.nukkit.nbt.tag.ListTag;
+import cn.nukkit.nbt.tag.Tag;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 由 display_rules.yml 编译得到的不可变显示规则
+ * 显示顺序解析为固定的部分列表，各部分用到的规则在编译时选好，
+ * 渲染时直接读取 YRAttributes 标签，不转换整个 NBT 树
+ */
+public final class DisplayRules {
+    /** 分隔线 */
+    static final String SEPARATOR = "§8§m--------------------";
+    private static final String[] ROMAN = {"I", "II", "III", "IV", "V", "VI", "VII", "VIII", "IX", "X"};
+
+    /**
+     * display_order 中可用的部分
+     */
+    enum Section {
+        ATTRIBUTES, ENCHANTMENTS, ENHANCE, LEVEL, BOUND
+    }
+
+    private static final Section[] DEFAULT_ORDER = {
+            Section.ATTRIBUTES, Section.ENCHANTMENTS, Section.LEVEL, Section.BOUND
+    };
+
+    private final Section[] order;
+    /** attributes 部分的规则，不含 nbt_key 为 EnhanceLevel / level 的规则 */
+    private final DisplayRule[] attributeRules;
+    /** level 部分的规则：第一条 nbt_key 为 EnhanceLevel 或 level 的规则 */
+    private final DisplayRule levelRule;
+    /** enhance 部分的规则：第一条 nbt_key 为 EnhanceLevel 的规则 */
+    private final DisplayRule enhanceRule;
+    private final int ruleCount;
+    private final List<String> unknownSections;
+    private final int version;
+
+    private DisplayRules(int version, Section[] order, List<DisplayRule> rules, List<String> unknownSections) {
+        this.version = version;
+        this.order = order;
+        List<DisplayRule> attributes = new ArrayList<>();
+        DisplayRule level = null;
+        DisplayRule enhance = null;
+        for (DisplayRule rule : rules) {
+            boolean isEnhance = "EnhanceLevel".equals(rule.nbtKey);
+            if (isEnhance || "level".equals(rule.nbtKey)) {
+                if (level == null) level = rule;
+                if (isEnhance && enhance == null) enhance = rule;
+            } else {
+                attributes.add(rule);
+            }
+        }
+        this.attributeRules = attributes.toArray(new DisplayRule[0]);
+        this.levelRule = level;
+        this.enhanceRule = enhance;
+        this.ruleCount = rules.size();
+        this.unknownSections = Collections.unmodifiableList(unknownSections);
+    }
+
+    /**
+     * 编译显示规则配置
+     * @param config display_rules.yml 的全部内容 (按文件中的顺序)
+     * @param version 规则版本，每次重新编译递增，用作渲染缓存键的一部分
+     */
+    public static DisplayRules compile(Map<String, Object> config, int version) {
+        Section[] order = DEFAULT_ORDER;
+        List<String> unknown = new ArrayList<>();
+        List<DisplayRule> rules = new ArrayList<>();
+        for (Map.Entry<String, Object> entry : config.entrySet()) {
+            if ("display_order".equals(entry.getKey())) {
+                if (entry.getValue() instanceof List) {
+                    order = parseOrder((List<?>) entry.getValue(), unknown);
+                }
+                continue;
+            }
+            DisplayRule rule = DisplayRule.compile(entry.getKey(), entry.getValue());
+            if (rule != null) rules.add(rule);
+        }
+        return new DisplayRules(version, order, rules, unknown);
+    }
+
+    private static Section[] parseOrder(List<?> list, List<String> unknown) {
+        List<Section> sections = new ArrayList<>(list.size());
+        for (Object o : list) {
+            String name = String.valueOf(o).trim();
+            Section section = null;
+            for (Section s : Section.values()) {
+                if (s.name().toLowerCase(Locale.ROOT).equals(name)) section = s;
+            }
+            if (section != null) {
+                sections.add(section);
+            } else {
+                unknown.add(name);
+            }
+        }
+        return sections.toArray(new Section[0]);
+    }
+
+    /**
+     * 渲染动态Lore
+     * @param attributes 物品的 YRAttributes 标签
+     */
+    public String[] render(CompoundTag attributes) {
+        List<String> lore = new ArrayList<>();
+        lore.add(SEPARATOR);
+        for (Section section : order) {
+            switch (section) {
+                case ATTRIBUTES:
+                    renderAttributes(attributes, lore);
+                    break;
+                case ENCHANTMENTS:
+                    renderEnchantments(attributes, lore);
+                    break;
+                case ENHANCE:
+                    renderLevel(attributes.get("EnhanceLevel"), enhanceRule, lore);
+                    break;
+                case LEVEL: {
+                    Tag value = attributes.get("EnhanceLevel");
+                    renderLevel(value != null ? value : attributes.get("level"), levelRule, lore);
+                    break;
+                }
+                case BOUND:
+                    renderBound(attributes, lore);
+                    break;
+            }
+        }
+        lore.add(SEPARATOR);
+        return lore.toArray(new String[0]);
+    }
+
+    private void renderAttributes(CompoundTag attributes, List<String> lore) {
+        for (DisplayRule rule : attributeRules) {
+            Tag value = attributes.get(rule.nbtKey);
+            if (value != null) rule.render(value, lore);
+        }
+    }
+
+    private static void renderEnchantments(CompoundTag attributes, List<String> lore) {
+        Tag tag = attributes.get("Enchantments");
+        if (!(tag instanceof ListTag)) return;
+        ListTag<?> list = (ListTag<?>) tag;
+        if (list.size() == 0) return;
+        lore.add("");
+        lore.add("§d§l附魔:");
+        for (int i = 0; i < list.size(); i++) {
+            Tag element = list.get(i);
+            Tag name = null;
+            Tag level = null;
+            if (element instanceof CompoundTag) {
+                name = ((CompoundTag) element).get("name");
+                level = ((CompoundTag) element).get("level");
+            }
+            lore.add("§d  " + (name == null ? "undefined" : DisplayRule.concatText(name)) + " " + romanNumeral(level));
+        }
+    }
+
+    private static void renderLevel(Tag value, DisplayRule rule, List<String> lore) {
+        if (value == null) return;
+        lore.add("");
+        if (rule != null) {
+            rule.render(value, lore);
+        } else {
+            lore.add("§e§l强化: §r§e+" + DisplayRule.concatText(value));
+        }
+    }
+
+    private static void renderBound(CompoundTag attributes, List<String> lore) {
+        Tag player = attributes.get("BoundTo");
+        if (player == null) player = attributes.get("Bound");
+        if (player == null) return;
+        lore.add("");
+        lore.add("§c§l绑定: §r§7" + DisplayRule.concatText(player));
+    }
+
+    /**
+     * 1~10 转换为罗马数字，其他原样输出
+     */
+    private static String romanNumeral(Tag level) {
+        if (level == null) return "undefined";
+        double n = DisplayRule.number(level);
+        if (n > 0 && n <= 10) {
+            return n == Math.rint(n) ? ROMAN[(int) n - 1] : "undefined";
+        }
+        return DisplayRule.text(level);
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public int getRuleCount() {
+        return ruleCount;
+    }
+
+    /**
+     * display_order 中无法识别的部分名
+     */
+    public List<String> getUnknownSections() {
+        return unknownSections;
+    }
+}
@@ -0,0 +1,95 @@
+package com.yirankuma.yritems.lore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+/**
+ * 监视配置目录中的显示规则文件，文件被创建或修改后通知渲染器重新编译
+ * 在单独的守护线程中运行
+ */
+final class DisplayRulesWatcher implements Runnable {
+    /** 编辑器保存时可能连续触发多次事件，等待片刻后合并处理 */
+    private static final long SETTLE_MILLIS = 200;
+
+    private final DynamicLoreRenderer renderer;
+    private final String fileName;
+    private final WatchService service;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    private DisplayRulesWatcher(DynamicLoreRenderer renderer, String fileName, WatchService service) {
+        this.renderer = renderer;
+        this.fileName = fileName;
+        this.service = service;
+        this.thread = new Thread(this, "YRItems-DisplayRulesWatcher");
+        this.thread.setDaemon(true);
+    }
+
+    static DisplayRulesWatcher start(DynamicLoreRenderer renderer, File dir, String fileName) throws IOException {
+        WatchService service = FileSystems.getDefault().newWatchService();
+        try {
+            dir.toPath().register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            service.close();
+            throw e;
+        }
+        DisplayRulesWatcher watcher = new DisplayRulesWatcher(renderer, fileName, service);
+        watcher.thread.start();
+        return watcher;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!closed) {
+                WatchKey key = service.take();
+                boolean changed = isTarget(key);
+                key.reset();
+                if (!changed) continue;
+
+                Thread.sleep(SETTLE_MILLIS);
+                WatchKey more;
+                while ((more = service.poll()) != null) {
+                    more.pollEvents();
+                    more.reset();
+                }
+                try {
+                    renderer.onFileChanged();
+                } catch (RuntimeException e) {
+                    renderer.logWatchError(e);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+            // 已关闭
+        }
+    }
+
+    private boolean isTarget(WatchKey key) {
+        boolean target = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            // 事件过多被丢弃时无法确定是否涉及该文件，按已修改处理
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) target = true;
+            Object context = event.context();
+            if (context instanceof Path && fileName.equals(((Path) context).getFileName().toString())) {
+                target = true;
+            }
+        }
+        return target;
+    }
+
+    void close() {
+        closed = true;
+        try {
+            service.close();
+        } catch (IOException ignored) {
+        }
+        thread.interrupt();
+    }
+}
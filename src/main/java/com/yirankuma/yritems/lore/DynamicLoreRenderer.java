@@ -0,0 +1,254 @@
+package com.yirankuma.yritems.lore;
+
+import cn.nukkit.item.Item;
+import cn.nukkit.nbt.tag.CompoundTag;
+import cn.nukkit.nbt.tag.ListTag;
+import cn.nukkit.nbt.tag.StringTag;
+import cn.nukkit.nbt.tag.Tag;
+import cn.nukkit.utils.Config;
+import com.yirankuma.yritems.YRItems;
+import com.yirankuma.yritems.hook.BinaryStreamHook;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 内置动态Lore渲染器
+ * 与 Scripts/DynamicLore.js 输出相同的Lore，规则在加载时编译为 {@link DisplayRules}，
+ * 发送物品时直接读取 YRAttributes 标签渲染，不经过脚本引擎
+ *
+ * 主配置 native-dynamic-lore 为 false 时停用，由脚本负责渲染
+ *
+ * YRAttributes 相同的物品渲染结果相同，渲染结果按 (YRAttributes 内容哈希, 规则版本) 缓存，
+ * 重新编译规则时整体清空
+ *
+ * 编译结果是不可变的快照，通过 {@link AtomicReference} 整体替换，渲染时无锁读取。
+ * 只有 display_rules.yml 内容变化时才重新编译：执行 /yritems reload，或监视线程发现文件被修改
+ */
+public class DynamicLoreRenderer {
+
+    /** 显示规则配置文件名 */
+    public static final String CONFIG_FILE = "display_rules.yml";
+
+    private static final int CACHE_SIZE = 2048;
+
+    private final YRItems plugin;
+    private volatile boolean enabled;
+    /** 当前规则快照，未加载到配置文件时为 null，此时不渲染 */
+    private final AtomicReference<DisplayRules> rules = new AtomicReference<>();
+    private int version;
+    /** 当前快照对应的配置文件内容摘要，内容未变化时不重新编译 */
+    private long sourceDigest;
+    private DisplayRulesWatcher watcher;
+    /** (YRAttributes 哈希, 规则版本) -> 渲染出的Lore，按访问顺序淘汰 */
+    private final Map<Long, String[]> cache = new LinkedHashMap<Long, String[]>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, String[]> eldest) {
+            if (size() > CACHE_SIZE) {
+                evictions++;
+                return true;
+            }
+            return false;
+        }
+    };
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public DynamicLoreRenderer(YRItems plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * 从已加载的配置文件编译显示规则，文件内容未变化时保留当前快照
+     */
+    public synchronized void reload() {
+        this.enabled = plugin.getConfig().getBoolean("native-dynamic-lore", true);
+        compile();
+    }
+
+    /**
+     * 监视线程发现配置文件被修改时调用
+     */
+    synchronized void onFileChanged() {
+        DisplayRules before = rules.get();
+        plugin.getCustomConfigManager().reloadConfig(CONFIG_FILE);
+        compile();
+        if (rules.get() != before) {
+            plugin.getLogger().info("检测到 " + CONFIG_FILE + " 已修改，显示规则已更新");
+        }
+    }
+
+    private void compile() {
+        Config config = plugin.getCustomConfigManager().getConfig(CONFIG_FILE);
+        if (config == null) {
+            publish(null, 0);
+            if (enabled) plugin.getLogger().warning("未找到配置文件: " + CONFIG_FILE + "，动态Lore将不会显示");
+            return;
+        }
+        long digest = digest(new File(plugin.getCustomConfigManager().getConfigsDir(), CONFIG_FILE));
+        if (rules.get() != null && digest != 0 && digest == sourceDigest) {
+            return;
+        }
+        try {
+            DisplayRules compiled = DisplayRules.compile(config.getAll(), ++version);
+            for (String section : compiled.getUnknownSections()) {
+                plugin.getLogger().warning("动态Lore: 未知的显示部分 '" + section + "'");
+            }
+            publish(compiled, digest);
+            if (enabled) plugin.getLogger().info("已编译动态Lore显示规则: " + compiled.getRuleCount() + " 条");
+        } catch (Exception e) {
+            publish(null, 0);
+            plugin.getLogger().warning("编译动态Lore显示规则失败: " + e.getMessage());
+        }
+    }
+
+    private void publish(DisplayRules compiled, long digest) {
+        rules.set(compiled);
+        sourceDigest = digest;
+        clearCache();
+    }
+
+    /**
+     * 配置文件内容的 FNV-1a 64 位摘要
+     * @return 读取失败时返回 0，此时总是重新编译
+     */
+    private static long digest(File file) {
+        try {
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            long h = 0xcbf29ce484222325L;
+            for (byte b : bytes) {
+                h ^= b & 0xff;
+                h *= 0x100000001b3L;
+            }
+            return h == 0 ? 1 : h;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 开始监视配置目录，display_rules.yml 被修改后自动重新编译
+     */
+    public synchronized void startWatching() {
+        if (watcher != null) return;
+        try {
+            watcher = DisplayRulesWatcher.start(this, plugin.getCustomConfigManager().getConfigsDir(), CONFIG_FILE);
+        } catch (Exception e) {
+            plugin.getLogger().warning("无法监视显示规则配置文件，修改后请执行 /yritems reload: " + e.getMessage());
+        }
+    }
+
+    void logWatchError(Exception e) {
+        plugin.getLogger().warning("重新编译显示规则失败: " + e.getMessage());
+    }
+
+    public synchronized void stopWatching() {
+        if (watcher != null) {
+            watcher.close();
+            watcher = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 当前规则快照
+     * @return 未加载到配置文件时返回 null
+     */
+    public DisplayRules getRules() {
+        return rules.get();
+    }
+
+    /**
+     * 处理物品，返回带动态Lore的克隆物品
+     * @return 未启用、没有 UseDynamicLore 标记或没有 YRAttributes 时返回 null
+     */
+    public Item process(Item item) {
+        DisplayRules current = rules.get();
+        if (!enabled || current == null) return null;
+        if (item == null || item.getId() == 0 || !item.hasCompoundTag()) return null;
+
+        CompoundTag nbt = item.getNamedTag();
+        if (nbt == null || nbt.isEmpty()) return null;
+        if (!nbt.contains("UseDynamicLore") || nbt.getByte("UseDynamicLore") != 1) return null;
+        Tag attributes = nbt.get("YRAttributes");
+        if (!(attributes instanceof CompoundTag)) return null;
+
+        try {
+            String[] lore = render(current, (CompoundTag) attributes);
+            return withLore(item, nbt, lore);
+        } catch (Exception e) {
+            // 单个物品的数据异常时原样发送，不影响同一数据包中的其他物品
+            plugin.getLogger().warning("渲染动态Lore失败: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 渲染Lore，相同内容的 YRAttributes 复用缓存的结果
+     * @return 缓存共享的数组，调用方不能修改
+     */
+    private String[] render(DisplayRules current, CompoundTag attributes) {
+        Long key = AttributeHash.mix(AttributeHash.of(attributes) + current.getVersion() * 0x9e3779b97f4a7c15L);
+        synchronized (cache) {
+            String[] lore = cache.get(key);
+            if (lore != null) {
+                hits++;
+                return lore;
+            }
+            misses++;
+        }
+        String[] lore = current.render(attributes);
+        synchronized (cache) {
+            cache.put(key, lore);
+        }
+        return lore;
+    }
+
+    /**
+     * 清空渲染缓存，规则重新编译时调用
+     */
+    public void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    public String getStats() {
+        synchronized (cache) {
+            long total = hits + misses;
+            double rate = total == 0 ? 0 : hits * 100.0 / total;
+            return String.format("动态Lore缓存: %d/%d 条, 命中 %d, 未命中 %d, 淘汰 %d, 命中率 %.1f%%",
+                    cache.size(), CACHE_SIZE, hits, misses, evictions, rate);
+        }
+    }
+
+    /**
+     * 克隆物品并写入Lore和动态Lore标记，只序列化一次 NBT
+     */
+    static Item withLore(Item item, CompoundTag nbt, String[] lore) {
+        CompoundTag tag = nbt.copy();
+        ListTag<StringTag> loreTag = new ListTag<>("Lore");
+        for (String line : lore) {
+            loreTag.add(new StringTag("", line));
+        }
+        CompoundTag display = tag.contains("display") ? tag.getCompound("display") : null;
+        if (display == null) {
+            display = new CompoundTag("display");
+            tag.putCompound("display", display);
+        }
+        display.putList(loreTag);
+        tag.putByte(BinaryStreamHook.DYNAMIC_LORE_MARKER, 1);
+
+        Item cloned = item.clone();
+        cloned.setNamedTag(tag);
+        return cloned;
+    }
+}
@@ -0,0 +1,149 @@
+package com.yirankuma.yritems.node;
+
+/**
+ * 二项分布 Binomial(n, p) 抽样，参数固定，常量在构造时预先计算
+ * n·min(p, 1-p) 不超过 30 时用逆变换法 (期望迭代次数与均值成正比)，
+ * 否则用 BTPE 算法 (Kachitvichyanukul &amp; Schmeiser, 1988)，耗时与 n 无关
+ */
+final class BinomialSampler {
+    private static final double INVERSION_LIMIT = 30.0;
+
+    private final int n;
+    /** 抽样使用的概率 r = min(p, 1-p)，p &gt; 0.5 时结果取 n - X */
+    private final double r;
+    private final double q;
+    private final boolean flipped;
+    private final boolean inversion;
+
+    // 逆变换法
+    private final double qn;
+    private final double bound;
+
+    // BTPE
+    private final double m;
+    private final double nrq;
+    private final double p1, xm, xl, xr, c, laml, lamr, p2, p3, p4;
+
+    BinomialSampler(int n, double p) {
+        this.n = Math.max(n, 0);
+        this.flipped = p > 0.5;
+        this.r = Math.max(0, Math.min(flipped ? 1 - p : p, 1));
+        this.q = 1 - r;
+        double np = this.n * r;
+        this.inversion = np <= INVERSION_LIMIT;
+        this.nrq = this.n * r * q;
+
+        this.qn = Math.exp(this.n * Math.log(q));
+        this.bound = Math.min(this.n, np + 10.0 * Math.sqrt(nrq + 1));
+
+        double fm = this.n * r + r;
+        this.m = Math.floor(fm);
+        this.p1 = Math.floor(2.195 * Math.sqrt(nrq) - 4.6 * q) + 0.5;
+        this.xm = m + 0.5;
+        this.xl = xm - p1;
+        this.xr = xm + p1;
+        this.c = 0.134 + 20.5 / (15.3 + m);
+        double a = (fm - xl) / (fm - xl * r);
+        this.laml = a * (1.0 + a / 2.0);
+        a = (xr - fm) / (xr * q);
+        this.lamr = a * (1.0 + a / 2.0);
+        this.p2 = p1 * (1.0 + 2.0 * c);
+        this.p3 = p2 + c / laml;
+        this.p4 = p3 + c / lamr;
+    }
+
+    int sample(RandomSource random) {
+        if (n == 0 || r <= 0) return flipped ? n : 0;
+        int x = inversion ? inversion(random) : btpe(random);
+        return flipped ? n - x : x;
+    }
+
+    private int inversion(RandomSource random) {
+        int x = 0;
+        double px = qn;
+        double u = random.nextDouble();
+        while (u > px) {
+            x++;
+            if (x > bound) {
+                // 浮点误差导致越界时重新抽样
+                x = 0;
+                px = qn;
+                u = random.nextDouble();
+            } else {
+                u -= px;
+                px = ((n - x + 1) * r * px) / (x * q);
+            }
+        }
+        return x;
+    }
+
+    private int btpe(RandomSource random) {
+        while (true) {
+            double u = random.nextDouble() * p4;
+            double v = random.nextDouble();
+            double y;
+            if (u <= p1) {
+                // 三角形区域，直接接受
+                return (int) Math.floor(xm - p1 * v + u);
+            }
+            if (u <= p2) {
+                // 平行四边形区域
+                double x = xl + (u - p1) / c;
+                v = v * c + 1.0 - Math.abs(m - x + 0.5) / p1;
+                if (v > 1.0) continue;
+                y = Math.floor(x);
+            } else if (u <= p3) {
+                // 左侧指数尾部
+                y = Math.floor(xl + Math.log(v) / laml);
+                if (y < 0 || v == 0.0) continue;
+                v = v * (u - p2) * laml;
+            } else {
+                // 右侧指数尾部
+                y = Math.floor(xr - Math.log(v) / lamr);
+                if (y > n || v == 0.0) continue;
+                v = v * (u - p3) * lamr;
+            }
+
+            double k = Math.abs(y - m);
+            if (k <= 20 || k >= nrq / 2.0 - 1) {
+                // 递推计算 f(y) / f(m)
+                double s = r / q;
+                double a = s * (n + 1);
+                double f = 1.0;
+                if (m < y) {
+                    for (double i = m + 1; i <= y; i++) f *= (a / i - s);
+                } else if (m > y) {
+                    for (double i = y + 1; i <= m; i++) f /= (a / i - s);
+                }
+                if (v > f) continue;
+                return (int) y;
+            }
+
+            // 对数挤压，必要时用 Stirling 公式精确比较
+            double rho = (k / nrq) * ((k * (k / 3.0 + 0.625) + 0.1666666666666) / nrq + 0.5);
+            double t = -k * k / (2 * nrq);
+            double alpha = Math.log(v);
+            if (alpha < t - rho) return (int) y;
+            if (alpha > t + rho) continue;
+
+            double x1 = y + 1;
+            double f1 = m + 1;
+            double z = n + 1 - m;
+            double w = n - y + 1;
+            double x2 = x1 * x1;
+            double f2 = f1 * f1;
+            double z2 = z * z;
+            double w2 = w * w;
+            double limit = xm * Math.log(f1 / x1)
+                    + (n - m + 0.5) * Math.log(z / w)
+                    + (y - m) * Math.log(w * r / (x1 * q))
+                    + stirling(f1, f2) + stirling(z, z2) + stirling(x1, x2) + stirling(w, w2);
+            if (alpha > limit) continue;
+            return (int) y;
+        }
+    }
+
+    private static double stirling(double v, double v2) {
+        return (13680. - (462. - (132. - (99. - 140. / v2) / v2) / v2) / v2) / v / 166320.;
+    }
+}
@@ -0,0 +1,232 @@
+package com.yirankuma.yritems.node;
+
+import com.yirankuma.yritems.YRItems;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Scriptable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * CALCULATION / FASTCALC 节点：根据 &lt;nodeId&gt; 依赖计算公式
+ * FASTCALC 在计划编译时编译为 {@link FastCalc} 表达式；
+ * CALCULATION 若只引用数值节点且公式在 {@link FastCalc#compileScript} 支持的范围内，同样直接求值，
+ * 否则改写为带参数的表达式后由 Rhino 编译缓存执行
+ */
+final class CalculationNode extends CompiledNode {
+    private static final Pattern REFERENCE = Pattern.compile("<([^<>\\s]+)>");
+    private static final Pattern STRING_LITERAL = Pattern.compile("\"(?:\\\\.|[^\"\\\\])*\"|'(?:\\\\.|[^'\\\\])*'");
+    private static final Pattern IDENTIFIER = Pattern.compile("(?<![\\w$])[A-Za-z_$][\\w$]*");
+    private static final Pattern PARAM = Pattern.compile("__p\\d+");
+    /** 可以在加载时折叠的脚本公式中允许出现的标识符 (不含 Math.random 等有副作用或不确定的函数) */
+    private static final Set<String> PURE_IDENTIFIERS = new HashSet<>(Arrays.asList(
+            "Math", "abs", "ceil", "floor", "round", "trunc", "sign", "min", "max", "pow", "sqrt", "cbrt",
+            "exp", "log", "log10", "log2", "sin", "cos", "tan", "asin", "acos", "atan", "atan2", "hypot",
+            "PI", "E", "LN2", "LN10", "SQRT2", "parseInt", "parseFloat", "Number", "isNaN", "isFinite",
+            "NaN", "Infinity", "true", "false", "null", "toFixed", "length"));
+
+    private final String formula;
+    private final List<String> references;
+    private final boolean useJS;
+    private final boolean hasMin;
+    private final int min;
+    private final boolean hasMax;
+    private final int max;
+    private final Rounding rounding;
+    /** 编译后的表达式，FASTCALC 编译失败或 CALCULATION 需要脚本引擎时为 null */
+    private FastCalc.Formula expression;
+    /** 直接求值的 CALCULATION 引用的槽位，任一未求值时与脚本执行一样结果为 0 */
+    private int[] scriptSlots;
+    /** 需要脚本引擎的 CALCULATION 参数化后的公式 */
+    private ScriptFormula scriptFormula;
+    private String compileError;
+
+    CalculationNode(NodeDefinition def, boolean useJS) {
+        super(def.getId(), useJS ? NodeType.CALCULATION : NodeType.FASTCALC);
+        this.formula = def.getString("formula", "");
+        this.useJS = useJS;
+        this.references = parseReferences(formula);
+        this.hasMin = def.getOptions().containsKey("min");
+        this.min = def.getInt("min", 0);
+        this.hasMax = def.getOptions().containsKey("max");
+        this.max = def.getInt("max", Integer.MAX_VALUE);
+        this.rounding = Rounding.of(def, 0);
+    }
+
+    @Override
+    public List<String> getReferences() {
+        return references;
+    }
+
+    @Override
+    public String getCompileError() {
+        return compileError;
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return scriptFormula == null;
+    }
+
+    @Override
+    boolean isNumeric() {
+        return true;
+    }
+
+    @Override
+    void link(Map<String, Integer> slots, CompiledNode[] nodes) {
+        if (formula.isEmpty()) return;
+        if (useJS) {
+            expression = compileScript(slots, nodes);
+            if (expression == null) scriptFormula = ScriptFormula.parse(formula, slots);
+            return;
+        }
+        try {
+            expression = FastCalc.compile(formula, slots);
+        } catch (RuntimeException e) {
+            expression = null;
+            compileError = "公式 \"" + formula + "\" 编译失败: " + e.getMessage();
+        }
+    }
+
+    /**
+     * 尝试把 CALCULATION 公式编译为直接求值的表达式
+     * 要求引用的节点都是数值节点 (脚本中拿到的参数也都是数字)，且结果不是布尔值
+     * @return 不满足条件时返回 null
+     */
+    private FastCalc.Formula compileScript(Map<String, Integer> slots, CompiledNode[] nodes) {
+        int[] refs = new int[references.size()];
+        for (int i = 0; i < refs.length; i++) {
+            Integer slot = slots.get(references.get(i));
+            if (slot == null || !nodes[slot].isNumeric()) return null;
+            refs[i] = slot;
+        }
+        FastCalc.Formula compiled;
+        try {
+            compiled = FastCalc.compileScript(formula, slots);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (compiled.isLogical()) return null;
+        scriptSlots = refs;
+        return compiled;
+    }
+
+    @Override
+    void evaluate(NodeEvaluator evaluator, EvalContext ctx) {
+        if (formula.isEmpty()) {
+            ctx.setNumber(getSlot(), 0.0);
+            return;
+        }
+        double val;
+        if (expression != null) {
+            val = expression.eval(ctx.numbers, evaluator.random());
+            if (scriptSlots != null) {
+                for (int slot : scriptSlots) {
+                    if (Double.isNaN(ctx.numbers[slot])) val = 0.0;
+                }
+            }
+        } else if (scriptFormula != null) {
+            // 用Rhino执行编译缓存中的表达式，依赖节点的值作为参数传入
+            Object[] args = scriptFormula.bind(ctx);
+            val = 0.0;
+            if (args != null) {
+                try {
+                    Object ret = YRItems.getInstance().getScriptEngine().evalExpression(scriptFormula.source, args);
+                    val = Double.parseDouble(String.valueOf(ret));
+                } catch (Exception e) {
+                    val = 0.0;
+                }
+            }
+        } else {
+            val = 0.0;
+        }
+        ctx.setNumber(getSlot(), finish(val));
+    }
+
+    @Override
+    boolean fold(NodeEvaluator evaluator, EvalContext ctx) {
+        // 编译失败的公式保留原节点，以便加载时报告错误
+        if (compileError != null) return false;
+        if (formula.isEmpty() || expression != null) {
+            if (expression != null && expression.isRandom()) return false;
+            evaluate(evaluator, ctx);
+            return true;
+        }
+        if (!isPureScript(scriptFormula.source)) return false;
+        Object[] args = scriptFormula.bind(ctx);
+        if (args == null) return false;
+        Object ret = evalStandalone(scriptFormula.source, args);
+        if (ret == null) return false;
+        try {
+            ctx.setNumber(getSlot(), finish(Double.parseDouble(String.valueOf(ret))));
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 结果截断、取整
+     */
+    private double finish(double val) {
+        // 引用了未求值或非数值的节点，或结果不是有限数
+        if (Double.isNaN(val) || Double.isInfinite(val)) val = 0.0;
+        if (hasMin) val = Math.max(min, val);
+        if (hasMax) val = Math.min(max, val);
+        return rounding.apply(val);
+    }
+
+    /**
+     * 公式 (字符串字面量以外) 只使用参数和 Math 中的确定性函数
+     */
+    private static boolean isPureScript(String source) {
+        Matcher m = IDENTIFIER.matcher(STRING_LITERAL.matcher(source).replaceAll("\"\""));
+        while (m.find()) {
+            String name = m.group();
+            if (!PURE_IDENTIFIERS.contains(name) && !PARAM.matcher(name).matches()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 在只含标准对象的独立作用域中执行公式
+     * 加载物品时脚本引擎可能尚未初始化，纯公式的结果也不依赖脚本中定义的内容
+     * @return 执行失败返回 null
+     */
+    private static Object evalStandalone(String source, Object[] args) {
+        StringBuilder params = new StringBuilder();
+        for (int i = 0; i < args.length; i++) {
+            if (i > 0) params.append(", ");
+            params.append("__p").append(i);
+        }
+        Context cx = Context.enter();
+        try {
+            Scriptable scope = cx.initSafeStandardObjects();
+            Function function = cx.compileFunction(scope,
+                    "function(" + params + ") {\nreturn (" + source + "\n);\n}", "fold", 1, null);
+            return function.call(cx, scope, scope, args);
+        } catch (RuntimeException e) {
+            return null;
+        } finally {
+            Context.exit();
+        }
+    }
+
+    private static List<String> parseReferences(String formula) {
+        List<String> refs = new ArrayList<>();
+        Matcher m = REFERENCE.matcher(formula);
+        while (m.find()) {
+            if (!refs.contains(m.group(1))) refs.add(m.group(1));
+        }
+        return refs.isEmpty() ? Collections.<String>emptyList() : Collections.unmodifiableList(refs);
+    }
+}
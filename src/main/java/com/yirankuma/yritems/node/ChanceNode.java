@@ -0,0 +1,49 @@
+package com.yirankuma.yritems.node;
+
+/**
+ * CHANCE 节点：重复 repeat 次概率为 success/total 的判定，统计成功次数
+ * 直接从二项分布 Binomial(repeat, success/total) 抽样，耗时与 repeat 无关
+ */
+final class ChanceNode extends CompiledNode {
+    private final double p;
+    private final int repeat;
+    private final boolean hasMin;
+    private final int min;
+    private final boolean hasMax;
+    private final int max;
+    private final BinomialSampler sampler;
+
+    ChanceNode(NodeDefinition def) {
+        super(def.getId(), NodeType.CHANCE);
+        double success = def.getDouble("success", 0);
+        double total = def.getDouble("total", 1);
+        this.p = total == 0 ? 0 : success / total;
+        this.repeat = def.getInt("repeat", 1);
+        this.hasMin = def.getOptions().containsKey("min");
+        this.min = def.getInt("min", 0);
+        this.hasMax = def.getOptions().containsKey("max");
+        this.max = def.getInt("max", Integer.MAX_VALUE);
+        this.sampler = new BinomialSampler(repeat, p);
+    }
+
+    @Override
+    boolean isNumeric() {
+        return true;
+    }
+
+    @Override
+    void evaluate(NodeEvaluator evaluator, EvalContext ctx) {
+        int count = sampler.sample(evaluator.random());
+        if (hasMin) count = Math.max(count, min);
+        if (hasMax) count = Math.min(count, max);
+        ctx.setNumber(getSlot(), count);
+    }
+
+    @Override
+    boolean fold(NodeEvaluator evaluator, EvalContext ctx) {
+        // 必定成功或必定失败
+        if (repeat > 0 && p > 0 && p < 1) return false;
+        evaluate(evaluator, ctx);
+        return true;
+    }
+}
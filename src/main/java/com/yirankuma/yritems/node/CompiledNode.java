@@ -0,0 +1,127 @@
+package com.yirankuma.yritems.node;
+
+import com.yirankuma.yritems.script.ItemsScriptEngineManager;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 编译后的节点
+ * 参数在配置加载时解析完毕，运行时只负责求值
+ */
+public abstract class CompiledNode {
+    private final String id;
+    private final NodeType type;
+    /** 在所属计划中的数值槽位，由 {@link NodePlan} 分配 */
+    private int slot = -1;
+
+    protected CompiledNode(String id, NodeType type) {
+        this.id = id;
+        this.type = type;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public NodeType getType() {
+        return type;
+    }
+
+    /**
+     * 节点结果的额外引用名 (WEIGHTDECLARE 的 key)，没有则返回 null
+     */
+    public String getAlias() {
+        return null;
+    }
+
+    /**
+     * 节点引用的其他节点名 (公式中的 &lt;id&gt;)，可能包含不存在的名字
+     */
+    public List<String> getReferences() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * 编译期发现的问题 (如公式无法解析)，没有则返回 null
+     */
+    public String getCompileError() {
+        return null;
+    }
+
+    /**
+     * 加载时折叠得到的常量结果文本，未折叠的节点返回 null
+     */
+    public String getFoldedValue() {
+        return null;
+    }
+
+    /**
+     * 是否可以在主线程以外求值 (调用脚本引擎的节点返回 false)
+     */
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    int getSlot() {
+        return slot;
+    }
+
+    void setSlot(int slot) {
+        this.slot = slot;
+    }
+
+    /**
+     * 结果总是数值 (NUMBER、CHANCE、GAUSSIAN、CALCULATION、FASTCALC)
+     */
+    boolean isNumeric() {
+        return false;
+    }
+
+    /**
+     * 计划排序完成后调用，用于把对其他节点的引用解析为槽位
+     * @param slots 节点名(及别名) -> 槽位
+     * @param nodes 按槽位排列的节点
+     */
+    void link(Map<String, Integer> slots, CompiledNode[] nodes) {
+    }
+
+    /**
+     * 把脚本引用 (JS 节点的函数路径) 解析为当前脚本引擎中的句柄
+     */
+    void bindScripts(ItemsScriptEngineManager engine) {
+    }
+
+    /**
+     * 求值并把结果写入上下文中本节点的槽位
+     */
+    abstract void evaluate(NodeEvaluator evaluator, EvalContext ctx);
+
+    /**
+     * 加载时尝试常量折叠：结果与随机数无关时求值一次写入 ctx
+     * 调用时本节点依赖的节点都已折叠，其结果已在 ctx 中
+     * @return 是否已写入结果，返回 false 的节点保持原样每次求值
+     */
+    boolean fold(NodeEvaluator evaluator, EvalContext ctx) {
+        return false;
+    }
+
+    /**
+     * 将节点定义编译为可执行节点
+     */
+    public static CompiledNode compile(NodeDefinition def) {
+        switch (def.getType()) {
+            case STRINGS: return new StringsNode(def);
+            case NUMBER: return new NumberNode(def);
+            case CHANCE: return new ChanceNode(def);
+            case GAUSSIAN: return new GaussianNode(def);
+            case CALCULATION: return new CalculationNode(def, true);
+            case FASTCALC: return new CalculationNode(def, false);
+            case WEIGHT: return new WeightNode(def);
+            case WEIGHTDECLARE: return new WeightDeclareNode(def);
+            case JS: return new JsNode(def);
+            default: return null;
+        }
+    }
+}
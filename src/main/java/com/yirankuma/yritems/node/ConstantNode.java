@@ -0,0 +1,46 @@
+package com.yirankuma.yritems.node;
+
+import java.util.List;
+
+/**
+ * 加载时折叠为常量的节点
+ * 保留原节点的ID、类型、别名和引用，求值时直接写入折叠的结果，不再持有原节点
+ */
+final class ConstantNode extends CompiledNode {
+    private final String alias;
+    private final List<String> references;
+    private final boolean number;
+    private final double numberValue;
+    private final String stringValue;
+
+    ConstantNode(CompiledNode source, EvalContext folded) {
+        super(source.getId(), source.getType());
+        this.alias = source.getAlias();
+        this.references = source.getReferences();
+        int slot = source.getSlot();
+        this.number = folded.isNumber(slot);
+        this.numberValue = folded.getNumber(slot);
+        this.stringValue = folded.getString(slot);
+        setSlot(slot);
+    }
+
+    @Override
+    public String getAlias() {
+        return alias;
+    }
+
+    @Override
+    public List<String> getReferences() {
+        return references;
+    }
+
+    @Override
+    public String getFoldedValue() {
+        return stringValue;
+    }
+
+    @Override
+    void evaluate(NodeEvaluator evaluator, EvalContext ctx) {
+        ctx.setConstant(getSlot(), number, numberValue, stringValue);
+    }
+}
@@ -0,0 +1,219 @@
+package com.yirankuma.yritems.node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一次计划执行的上下文，按槽位保存各节点的结果
+ * 数值结果以 double 保存；字符串结果直接引用节点预构建的取值；
+ * 列表结果保存为预构建取值数组上的下标，不复制字符串。数值、列表格式化后的文本按需生成并缓存
+ */
+public final class EvalContext {
+    private static final byte NONE = 0;
+    private static final byte NUMBER = 1;
+    private static final byte STRING = 2;
+    private static final byte LIST = 3;
+
+    private final NodePlan plan;
+    private final byte[] kinds;
+    /** 公式读取用的数值槽位：数值结果，或可解析为数字的字符串结果；未求值或非数值为 NaN */
+    final double[] numbers;
+    /** 字符串结果，或数值、列表结果格式化后的文本 */
+    private final String[] strings;
+    /** 列表结果：取值数组、选中的下标、未选中的下标，首次写入列表结果时分配 */
+    private String[][] sources;
+    private int[][] picks;
+    private int[][] elsePicks;
+
+    EvalContext(NodePlan plan, int slotCount) {
+        this.plan = plan;
+        this.kinds = new byte[slotCount];
+        this.numbers = new double[slotCount];
+        this.strings = new String[slotCount];
+        Arrays.fill(numbers, Double.NaN);
+    }
+
+    void setNumber(int slot, double value) {
+        kinds[slot] = NUMBER;
+        numbers[slot] = value;
+        strings[slot] = null;
+    }
+
+    void setString(int slot, String value) {
+        kinds[slot] = STRING;
+        numbers[slot] = toNumber(value);
+        strings[slot] = value;
+    }
+
+    /**
+     * 写入折叠的常量结果，数值和文本都已预先算好
+     */
+    void setConstant(int slot, boolean number, double numberValue, String text) {
+        kinds[slot] = number ? NUMBER : STRING;
+        numbers[slot] = numberValue;
+        strings[slot] = text;
+    }
+
+    /**
+     * @param source 节点预构建的取值数组，不会被修改
+     * @param selected 选中的下标 (按输出顺序)
+     * @param unselected 未选中的下标 (按声明顺序)
+     */
+    void setList(int slot, String[] source, int[] selected, int[] unselected) {
+        if (sources == null) {
+            sources = new String[kinds.length][];
+            picks = new int[kinds.length][];
+            elsePicks = new int[kinds.length][];
+        }
+        kinds[slot] = LIST;
+        sources[slot] = source;
+        picks[slot] = selected;
+        elsePicks[slot] = unselected;
+        // 只有一个元素时与字符串结果一样可参与计算
+        numbers[slot] = selected.length == 1 ? toNumber(source[selected[0]]) : Double.NaN;
+        strings[slot] = null;
+    }
+
+    /**
+     * 产生本上下文的计划
+     */
+    public NodePlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * 节点名 (或别名) 对应的槽位
+     * @return 计划中不存在时返回 -1
+     */
+    public int slotOf(String name) {
+        return plan.slotOf(name);
+    }
+
+    /**
+     * 槽位是否已有结果
+     */
+    public boolean has(int slot) {
+        return slot >= 0 && slot < kinds.length && kinds[slot] != NONE;
+    }
+
+    /**
+     * 是否为数值结果
+     */
+    public boolean isNumber(int slot) {
+        return kinds[slot] == NUMBER;
+    }
+
+    /**
+     * 数值结果，或可解析为数字的字符串结果；其他为 NaN
+     */
+    public double getNumber(int slot) {
+        return numbers[slot];
+    }
+
+    /**
+     * 结果的文本形式：数值为 String.valueOf，列表以 " | " 连接
+     */
+    public String getString(int slot) {
+        String s = strings[slot];
+        if (s != null) return s;
+        switch (kinds[slot]) {
+            case NUMBER:
+                s = String.valueOf(numbers[slot]);
+                break;
+            case LIST: {
+                StringBuilder sb = new StringBuilder();
+                String[] source = sources[slot];
+                int[] selected = picks[slot];
+                for (int i = 0; i < selected.length; i++) {
+                    if (i > 0) sb.append(" | ");
+                    sb.append(source[selected[i]]);
+                }
+                s = sb.toString();
+                break;
+            }
+            default:
+                return "";
+        }
+        strings[slot] = s;
+        return s;
+    }
+
+    public int getLength(int slot) {
+        return kinds[slot] == LIST ? picks[slot].length : 0;
+    }
+
+    public int getElseLength(int slot) {
+        return kinds[slot] == LIST ? elsePicks[slot].length : 0;
+    }
+
+    /**
+     * 列表结果的第 index 个元素
+     * @return 不是列表或越界时返回 null
+     */
+    public String getElement(int slot, int index) {
+        if (kinds[slot] != LIST || index < 0 || index >= picks[slot].length) return null;
+        return sources[slot][picks[slot][index]];
+    }
+
+    /**
+     * 列表结果中未选中的第 index 个元素
+     * @return 不是列表或越界时返回 null
+     */
+    public String getElseElement(int slot, int index) {
+        if (kinds[slot] != LIST || index < 0 || index >= elsePicks[slot].length) return null;
+        return sources[slot][elsePicks[slot][index]];
+    }
+
+    /**
+     * 按名称取得结果对象 (会创建新对象，生成物品时请使用槽位访问)
+     * @return 不存在或未求值时返回 null
+     */
+    public NodeResult get(String name) {
+        int slot = slotOf(name);
+        return has(slot) ? toResult(slot) : null;
+    }
+
+    /**
+     * 转换为 节点ID(及别名) -> 结果
+     */
+    public Map<String, NodeResult> toMap() {
+        Map<String, NodeResult> map = new HashMap<>();
+        for (String name : plan.getNames()) {
+            NodeResult r = get(name);
+            if (r != null) map.put(name, r);
+        }
+        return map;
+    }
+
+    private NodeResult toResult(int slot) {
+        switch (kinds[slot]) {
+            case NUMBER:
+                return NodeResult.ofNumber(numbers[slot]);
+            case LIST:
+                return NodeResult.ofList(elements(sources[slot], picks[slot]), elements(sources[slot], elsePicks[slot]));
+            default:
+                return NodeResult.ofString(strings[slot]);
+        }
+    }
+
+    private static List<String> elements(String[] source, int[] indexes) {
+        List<String> list = new ArrayList<>(indexes.length);
+        for (int idx : indexes) list.add(source[idx]);
+        return list;
+    }
+
+    private static double toNumber(String s) {
+        // 字符串结果若本身是数字也可参与计算
+        if (s == null || s.isEmpty()) return Double.NaN;
+        char c = s.charAt(0);
+        if (!Character.isDigit(c) && c != '.' && c != '-' && c != '+') return Double.NaN;
+        try {
+            return Double.parseDouble(s);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
@@ -1,70 +1,627 @@
 package com.yirankuma.yritems.node;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 /**
- * 简易数学表达式解析器 (支持 + - * / 和括号)
+ * 数学表达式编译器
+ *
+ * 公式在加载时编译为表达式树，节点引用 &lt;id&gt; 编译为对数值槽位 double[] 的读取，
+ * 求值时不做字符串替换也不重新解析。语法错误在编译时抛出，附带出错位置
+ *
+ * 支持的运算 (优先级从低到高)：
+ * 三元 a ? b : c，逻辑 || &amp;&amp;，比较 == != &lt; &lt;= &gt; &gt;=，加减，乘除取模 * / %，
+ * 一元 - + !，乘方 ^ (右结合)，以及函数 min max floor ceil round pow sqrt abs clamp rand 和常量 PI E
+ * 比较与逻辑运算的结果为 1 或 0，0 和 NaN 视为假；&amp;&amp; || 与 JS 一样返回其中一个操作数
+ *
+ * {@link #compileScript} 按 JS 语义编译 CALCULATION 公式的一个子集 (Math.xxx 函数、=== 等)，
+ * 用于把不需要脚本引擎的 CALCULATION 节点改为直接求值
  */
 public class FastCalc {
+
+    /**
+     * 编译后的表达式
+     */
+    public interface Expression {
+        /**
+         * @param slots 节点数值槽位
+         * @param random rand() 使用的随机源，不含 rand() 的表达式可传 null
+         */
+        double eval(double[] slots, RandomSource random);
+    }
+
+    /**
+     * 编译结果
+     */
+    public static final class Formula implements Expression {
+        private final Expression root;
+        private final boolean random;
+        private final boolean logical;
+
+        private Formula(Expression root, boolean random, boolean logical) {
+            this.root = root;
+            this.random = random;
+            this.logical = logical;
+        }
+
+        @Override
+        public double eval(double[] slots, RandomSource random) {
+            return root.eval(slots, random);
+        }
+
+        /**
+         * 是否调用了 rand()，结果不确定
+         */
+        public boolean isRandom() {
+            return random;
+        }
+
+        /**
+         * 最外层是否为比较或逻辑运算 (JS 中结果为布尔值而不是数字)
+         */
+        public boolean isLogical() {
+            return logical;
+        }
+    }
+
+    /**
+     * 解析并立即计算 (不支持节点引用和 rand)
+     */
     public static double eval(String expr) {
-        String s = expr.replaceAll("\\s+", "");
-        Deque<Double> values = new ArrayDeque<>();
-        Deque<Character> ops = new ArrayDeque<>();
-        int i = 0;
-        while (i < s.length()) {
-            char c = s.charAt(i);
-            if (Character.isDigit(c) || c == '.') {
-                int j = i;
-                while (j < s.length() && (Character.isDigit(s.charAt(j)) || s.charAt(j) == '.')) j++;
-                double v = Double.parseDouble(s.substring(i, j));
-                values.push(v);
-                i = j;
-                continue;
+        if (expr.trim().isEmpty()) return 0;
+        return compile(expr, Collections.<String, Integer>emptyMap()).eval(new double[0], null);
+    }
+
+    /**
+     * 编译 FASTCALC 表达式
+     * @param expr 表达式，可包含 &lt;id&gt; 节点引用
+     * @param slots 节点名 -&gt; 槽位下标
+     * @throws IllegalArgumentException 表达式非法或引用了不存在的节点
+     */
+    public static Formula compile(String expr, Map<String, Integer> slots) {
+        return new Parser(expr, slots, false).parse();
+    }
+
+    /**
+     * 按 JS 语义编译 CALCULATION 公式
+     * 只接受结果与 Rhino 执行完全一致的写法：函数必须写作 Math.xxx，
+     * 不支持字符串、^ (JS 中为按位异或)、++ -- 及以 0 开头的数字 (JS 中可能是八进制)；
+     * 除以 0 与 JS 一样得到 Infinity 或 NaN
+     * @throws IllegalArgumentException 公式超出可直接求值的范围
+     */
+    public static Formula compileScript(String expr, Map<String, Integer> slots) {
+        return new Parser(expr, slots, true).parse();
+    }
+
+    /**
+     * 递归下降解析器
+     * expression := or ('?' expression ':' expression)?
+     * or         := and ('||' and)*
+     * and        := equality ('&amp;&amp;' equality)*
+     * equality   := relation (('==' | '!=') relation)*
+     * relation   := additive (('&lt;' | '&lt;=' | '&gt;' | '&gt;=') additive)*
+     * additive   := term (('+' | '-') term)*
+     * term       := unary (('*' | '/' | '%') unary)*
+     * unary      := ('-' | '+' | '!') unary | power
+     * power      := primary ('^' unary)?
+     * primary    := number | '&lt;' id '&gt;' | '(' expression ')' | name ('(' args ')')?
+     */
+    private static final class Parser {
+        private final String s;
+        private final Map<String, Integer> slots;
+        /** JS 语义 */
+        private final boolean script;
+        private int pos;
+        private boolean random;
+
+        Parser(String s, Map<String, Integer> slots, boolean script) {
+            this.s = s;
+            this.slots = slots;
+            this.script = script;
+        }
+
+        Formula parse() {
+            Expression e = parseExpression();
+            skipSpaces();
+            if (pos < s.length()) throw error("多余的内容 \"" + s.substring(pos) + "\"");
+            return new Formula(e, random, isLogical(e));
+        }
+
+        Expression parseExpression() {
+            Expression cond = parseOr();
+            if (!accept("?")) return cond;
+            Expression a = parseExpression();
+            if (!accept(":")) throw error("三元表达式缺少 ':'");
+            Expression b = parseExpression();
+            return fold(new Conditional(cond, a, b), cond, a, b);
+        }
+
+        Expression parseOr() {
+            Expression left = parseAnd();
+            while (accept("||")) {
+                Expression right = parseAnd();
+                left = fold(new Or(left, right), left, right);
+            }
+            return left;
+        }
+
+        Expression parseAnd() {
+            Expression left = parseEquality();
+            while (accept("&&")) {
+                Expression right = parseEquality();
+                left = fold(new And(left, right), left, right);
+            }
+            return left;
+        }
+
+        Expression parseEquality() {
+            Expression left = parseRelation();
+            while (true) {
+                int op;
+                if (script && (accept("===") || accept("=="))) op = Compare.EQ;
+                else if (script && (accept("!==") || accept("!="))) op = Compare.NE;
+                else if (!script && accept("==")) op = Compare.EQ;
+                else if (!script && accept("!=")) op = Compare.NE;
+                else return left;
+                Expression right = parseRelation();
+                left = fold(new Compare(op, left, right), left, right);
+            }
+        }
+
+        Expression parseRelation() {
+            Expression left = parseAdditive();
+            while (true) {
+                int op;
+                if (accept("<=")) op = Compare.LE;
+                else if (accept(">=")) op = Compare.GE;
+                else if (accept("<")) op = Compare.LT;
+                else if (accept(">")) op = Compare.GT;
+                else return left;
+                Expression right = parseAdditive();
+                left = fold(new Compare(op, left, right), left, right);
+            }
+        }
+
+        Expression parseAdditive() {
+            Expression left = parseTerm();
+            while (true) {
+                skipSpaces();
+                if (pos >= s.length()) return left;
+                char c = s.charAt(pos);
+                if (c != '+' && c != '-') return left;
+                rejectIncrement(c);
+                pos++;
+                Expression right = parseTerm();
+                left = fold(c == '+' ? new Add(left, right) : new Sub(left, right), left, right);
+            }
+        }
+
+        Expression parseTerm() {
+            Expression left = parseUnary();
+            while (true) {
+                skipSpaces();
+                if (pos >= s.length()) return left;
+                char c = s.charAt(pos);
+                if (c != '*' && c != '/' && c != '%') return left;
+                pos++;
+                Expression right = parseUnary();
+                Expression e;
+                if (c == '*') e = new Mul(left, right);
+                else if (c == '/') e = new Div(left, right, !script);
+                else e = new Mod(left, right, !script);
+                left = fold(e, left, right);
+            }
+        }
+
+        Expression parseUnary() {
+            skipSpaces();
+            if (pos >= s.length()) throw error("表达式不完整");
+            char c = s.charAt(pos);
+            if (c == '-' || c == '+') {
+                rejectIncrement(c);
+                pos++;
+                Expression operand = parseUnary();
+                return c == '+' ? operand : fold(new Neg(operand), operand);
+            }
+            if (c == '!' && !s.startsWith("!=", pos)) {
+                pos++;
+                Expression operand = parseUnary();
+                return fold(new Not(operand), operand);
+            }
+            return parsePower();
+        }
+
+        Expression parsePower() {
+            Expression base = parsePrimary();
+            skipSpaces();
+            if (pos < s.length() && s.charAt(pos) == '^') {
+                if (script) throw error("JS 中 ^ 为按位异或");
+                pos++;
+                Expression exponent = parseUnary();
+                return fold(new Pow(base, exponent), base, exponent);
+            }
+            return base;
+        }
+
+        Expression parsePrimary() {
+            skipSpaces();
+            if (pos >= s.length()) throw error("表达式不完整");
+            char c = s.charAt(pos);
+            if (Character.isDigit(c) || c == '.') return parseNumber();
+            if (c == '<') {
+                int end = s.indexOf('>', pos);
+                if (end < 0) throw error("未闭合的节点引用");
+                String name = s.substring(pos + 1, end);
+                Integer slot = slots.get(name);
+                if (slot == null) throw error("未知节点: " + name);
+                pos = end + 1;
+                return new Slot(slot);
             }
             if (c == '(') {
-                ops.push(c);
-            } else if (c == ')') {
-                while (!ops.isEmpty() && ops.peek() != '(') {
-                    applyTop(values, ops);
+                pos++;
+                Expression inner = parseExpression();
+                if (!accept(")")) throw error("缺少右括号");
+                return inner;
+            }
+            if (Character.isLetter(c) || c == '_') return parseName();
+            throw error("非法字符 '" + c + "'");
+        }
+
+        Expression parseNumber() {
+            int start = pos;
+            while (pos < s.length() && (Character.isDigit(s.charAt(pos)) || s.charAt(pos) == '.')) pos++;
+            if (pos < s.length() && (s.charAt(pos) == 'e' || s.charAt(pos) == 'E')) {
+                int mark = pos++;
+                if (pos < s.length() && (s.charAt(pos) == '+' || s.charAt(pos) == '-')) pos++;
+                if (pos < s.length() && Character.isDigit(s.charAt(pos))) {
+                    while (pos < s.length() && Character.isDigit(s.charAt(pos))) pos++;
+                } else {
+                    pos = mark;
                 }
-                if (!ops.isEmpty() && ops.peek() == '(') ops.pop();
-            } else if (isOp(c)) {
-                while (!ops.isEmpty() && precedence(ops.peek()) >= precedence(c)) {
-                    applyTop(values, ops);
+            }
+            String text = s.substring(start, pos);
+            if (script && text.length() > 1 && text.charAt(0) == '0' && Character.isDigit(text.charAt(1))) {
+                pos = start;
+                throw error("以 0 开头的数字 " + text);
+            }
+            if (pos < s.length() && (Character.isLetter(s.charAt(pos)) || s.charAt(pos) == '_')) {
+                throw error("非法的数字 " + text + s.charAt(pos));
+            }
+            try {
+                return new Const(Double.parseDouble(text));
+            } catch (NumberFormatException e) {
+                pos = start;
+                throw error("非法的数字 " + text);
+            }
+        }
+
+        Expression parseName() {
+            int start = pos;
+            while (pos < s.length() && (Character.isLetterOrDigit(s.charAt(pos)) || s.charAt(pos) == '_' || s.charAt(pos) == '.')) {
+                pos++;
+            }
+            String full = s.substring(start, pos);
+            String name = full;
+            if (script) {
+                // JS 中只认 Math 上的函数，其他名字可能是脚本定义的函数或变量
+                if (!name.startsWith("Math.")) {
+                    pos = start;
+                    throw error("不支持的名称 " + full);
                 }
-                ops.push(c);
-            } else {
-                throw new IllegalArgumentException("非法字符: " + c);
+                name = name.substring(5);
+                if (name.equals("random")) name = "rand";
+                else if (name.equals("clamp") || name.equals("rand")) name = "";
+            } else if (name.startsWith("Math.")) {
+                name = name.substring(5);
+            }
+            if (name.equals("PI")) return new Const(Math.PI);
+            if (name.equals("E")) return new Const(Math.E);
+
+            if (!accept("(")) {
+                pos = start;
+                throw error("未知名称 " + full);
+            }
+            List<Expression> args = new ArrayList<>();
+            if (!accept(")")) {
+                do {
+                    args.add(parseExpression());
+                } while (accept(","));
+                if (!accept(")")) throw error("函数调用缺少右括号");
+            }
+            Expression[] a = args.toArray(new Expression[0]);
+            Expression call;
+            switch (name) {
+                case "min":
+                case "max":
+                    if (a.length == 0) throw error(name + " 至少需要 1 个参数");
+                    call = new MinMax(name.equals("max"), a);
+                    break;
+                case "floor":
+                    call = new Function1(Function1.FLOOR, arg1(name, a));
+                    break;
+                case "ceil":
+                    call = new Function1(Function1.CEIL, arg1(name, a));
+                    break;
+                case "round":
+                    call = new Function1(Function1.ROUND, arg1(name, a));
+                    break;
+                case "sqrt":
+                    call = new Function1(Function1.SQRT, arg1(name, a));
+                    break;
+                case "abs":
+                    call = new Function1(Function1.ABS, arg1(name, a));
+                    break;
+                case "pow":
+                    checkArgs(name, a, 2);
+                    call = new Pow(a[0], a[1]);
+                    break;
+                case "clamp":
+                    checkArgs(name, a, 3);
+                    call = new Clamp(a[0], a[1], a[2]);
+                    break;
+                case "rand":
+                    if (a.length > 2 || (script && a.length > 0)) throw error("rand 最多 2 个参数");
+                    random = true;
+                    return new Rand(a.length == 2 ? a[0] : null, a.length == 0 ? null : a[a.length - 1]);
+                default:
+                    pos = start;
+                    throw error("未知函数 " + full);
             }
-            i++;
+            return fold(call, a);
+        }
+
+        private Expression arg1(String name, Expression[] a) {
+            checkArgs(name, a, 1);
+            return a[0];
+        }
+
+        private void checkArgs(String name, Expression[] a, int count) {
+            if (a.length != count) throw error(name + " 需要 " + count + " 个参数，实际为 " + a.length);
+        }
+
+        /**
+         * JS 中 ++ -- 是自增自减运算符
+         */
+        private void rejectIncrement(char c) {
+            if (script && pos + 1 < s.length() && s.charAt(pos + 1) == c) throw error("不支持 " + c + c);
+        }
+
+        private boolean accept(String token) {
+            skipSpaces();
+            if (!s.startsWith(token, pos)) return false;
+            pos += token.length();
+            return true;
+        }
+
+        void skipSpaces() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) pos++;
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " (位置 " + (pos + 1) + ")");
+        }
+
+        /**
+         * 操作数都是常量时直接计算
+         */
+        private static Expression fold(Expression e, Expression... operands) {
+            for (Expression operand : operands) {
+                if (!(operand instanceof Const)) return e;
+            }
+            return new Const(e.eval(null, null), isLogical(e));
+        }
+    }
+
+    /**
+     * 结果是否为比较或逻辑运算的结果
+     */
+    private static boolean isLogical(Expression e) {
+        if (e instanceof Const) return ((Const) e).logical;
+        if (e instanceof Compare || e instanceof Not) return true;
+        if (e instanceof And) return isLogical(((And) e).a) || isLogical(((And) e).b);
+        if (e instanceof Or) return isLogical(((Or) e).a) || isLogical(((Or) e).b);
+        if (e instanceof Conditional) return isLogical(((Conditional) e).a) || isLogical(((Conditional) e).b);
+        return false;
+    }
+
+    private static boolean truthy(double v) {
+        return v != 0 && !Double.isNaN(v);
+    }
+
+    private static final class Const implements Expression {
+        private final double value;
+        /** 由比较或逻辑运算折叠而来 */
+        private final boolean logical;
+        Const(double value) { this(value, false); }
+        Const(double value, boolean logical) { this.value = value; this.logical = logical; }
+        public double eval(double[] slots, RandomSource random) { return value; }
+    }
+
+    private static final class Slot implements Expression {
+        private final int index;
+        Slot(int index) { this.index = index; }
+        public double eval(double[] slots, RandomSource random) { return slots[index]; }
+    }
+
+    private static final class Add implements Expression {
+        private final Expression a, b;
+        Add(Expression a, Expression b) { this.a = a; this.b = b; }
+        public double eval(double[] slots, RandomSource random) { return a.eval(slots, random) + b.eval(slots, random); }
+    }
+
+    private static final class Sub implements Expression {
+        private final Expression a, b;
+        Sub(Expression a, Expression b) { this.a = a; this.b = b; }
+        public double eval(double[] slots, RandomSource random) { return a.eval(slots, random) - b.eval(slots, random); }
+    }
+
+    private static final class Mul implements Expression {
+        private final Expression a, b;
+        Mul(Expression a, Expression b) { this.a = a; this.b = b; }
+        public double eval(double[] slots, RandomSource random) { return a.eval(slots, random) * b.eval(slots, random); }
+    }
+
+    private static final class Div implements Expression {
+        private final Expression a, b;
+        /** 除数为 0 时结果为 0 (FASTCALC)，否则按 IEEE 754 (JS) */
+        private final boolean guarded;
+        Div(Expression a, Expression b, boolean guarded) { this.a = a; this.b = b; this.guarded = guarded; }
+        public double eval(double[] slots, RandomSource random) {
+            double dividend = a.eval(slots, random);
+            double divisor = b.eval(slots, random);
+            return guarded && divisor == 0 ? 0 : dividend / divisor;
         }
-        while (!ops.isEmpty()) applyTop(values, ops);
-        if (values.isEmpty()) return 0;
-        return values.pop();
     }
 
-    private static boolean isOp(char c) {
-        return c == '+' || c == '-' || c == '*' || c == '/';
+    private static final class Mod implements Expression {
+        private final Expression a, b;
+        private final boolean guarded;
+        Mod(Expression a, Expression b, boolean guarded) { this.a = a; this.b = b; this.guarded = guarded; }
+        public double eval(double[] slots, RandomSource random) {
+            double dividend = a.eval(slots, random);
+            double divisor = b.eval(slots, random);
+            return guarded && divisor == 0 ? 0 : dividend % divisor;
+        }
+    }
+
+    /**
+     * 与 JS 的 Math.pow 一致：pow(±1, ±Infinity) 为 NaN (不同于 C 的 pow)，显式判断而不依赖 Math.pow 的实现
+     */
+    private static final class Pow implements Expression {
+        private final Expression a, b;
+        Pow(Expression a, Expression b) { this.a = a; this.b = b; }
+        public double eval(double[] slots, RandomSource random) {
+            double x = a.eval(slots, random);
+            double y = b.eval(slots, random);
+            if (Double.isInfinite(y) && Math.abs(x) == 1) return Double.NaN;
+            return Math.pow(x, y);
+        }
+    }
+
+    private static final class Neg implements Expression {
+        private final Expression a;
+        Neg(Expression a) { this.a = a; }
+        public double eval(double[] slots, RandomSource random) { return -a.eval(slots, random); }
+    }
+
+    private static final class Not implements Expression {
+        private final Expression a;
+        Not(Expression a) { this.a = a; }
+        public double eval(double[] slots, RandomSource random) { return truthy(a.eval(slots, random)) ? 0 : 1; }
+    }
+
+    private static final class Compare implements Expression {
+        static final int EQ = 0, NE = 1, LT = 2, LE = 3, GT = 4, GE = 5;
+        private final int op;
+        private final Expression a, b;
+        Compare(int op, Expression a, Expression b) { this.op = op; this.a = a; this.b = b; }
+        public double eval(double[] slots, RandomSource random) {
+            double x = a.eval(slots, random);
+            double y = b.eval(slots, random);
+            boolean r;
+            switch (op) {
+                case EQ: r = x == y; break;
+                case NE: r = x != y; break;
+                case LT: r = x < y; break;
+                case LE: r = x <= y; break;
+                case GT: r = x > y; break;
+                default: r = x >= y; break;
+            }
+            return r ? 1 : 0;
+        }
+    }
+
+    private static final class And implements Expression {
+        private final Expression a, b;
+        And(Expression a, Expression b) { this.a = a; this.b = b; }
+        public double eval(double[] slots, RandomSource random) {
+            double x = a.eval(slots, random);
+            return truthy(x) ? b.eval(slots, random) : x;
+        }
+    }
+
+    private static final class Or implements Expression {
+        private final Expression a, b;
+        Or(Expression a, Expression b) { this.a = a; this.b = b; }
+        public double eval(double[] slots, RandomSource random) {
+            double x = a.eval(slots, random);
+            return truthy(x) ? x : b.eval(slots, random);
+        }
+    }
+
+    private static final class Conditional implements Expression {
+        private final Expression cond, a, b;
+        Conditional(Expression cond, Expression a, Expression b) { this.cond = cond; this.a = a; this.b = b; }
+        public double eval(double[] slots, RandomSource random) {
+            return truthy(cond.eval(slots, random)) ? a.eval(slots, random) : b.eval(slots, random);
+        }
+    }
+
+    private static final class Function1 implements Expression {
+        static final int FLOOR = 0, CEIL = 1, ROUND = 2, SQRT = 3, ABS = 4;
+        private final int function;
+        private final Expression a;
+        Function1(int function, Expression a) { this.function = function; this.a = a; }
+        public double eval(double[] slots, RandomSource random) {
+            double x = a.eval(slots, random);
+            switch (function) {
+                case FLOOR: return Math.floor(x);
+                case CEIL: return Math.ceil(x);
+                case ROUND: return round(x);
+                case SQRT: return Math.sqrt(x);
+                default: return Math.abs(x);
+            }
+        }
+
+        /**
+         * 与 JS 的 Math.round 一致：.5 向正无穷取整，保留 -0
+         * 超出 long 范围的 double 都是整数，原样返回；Java 的 Math.round 会在 ±2^63 处饱和
+         */
+        private static double round(double x) {
+            if (Double.isNaN(x) || Double.isInfinite(x)) return x;
+            if (Math.abs(x) >= 0x1p63) return Math.floor(x + 0.5);
+            long l = Math.round(x);
+            if (l != 0) return l;
+            if (x < 0) return -0.0;
+            return x == 0 ? x : 0.0;
+        }
+    }
+
+    private static final class MinMax implements Expression {
+        private final boolean max;
+        private final Expression[] args;
+        MinMax(boolean max, Expression[] args) { this.max = max; this.args = args; }
+        public double eval(double[] slots, RandomSource random) {
+            double r = args[0].eval(slots, random);
+            for (int i = 1; i < args.length; i++) {
+                double v = args[i].eval(slots, random);
+                r = max ? Math.max(r, v) : Math.min(r, v);
+            }
+            return r;
+        }
     }
 
-    private static int precedence(char c) {
-        if (c == '+' || c == '-') return 1;
-        if (c == '*' || c == '/') return 2;
-        return 0;
+    private static final class Clamp implements Expression {
+        private final Expression value, low, high;
+        Clamp(Expression value, Expression low, Expression high) { this.value = value; this.low = low; this.high = high; }
+        public double eval(double[] slots, RandomSource random) {
+            double v = value.eval(slots, random);
+            return Math.min(Math.max(v, low.eval(slots, random)), high.eval(slots, random));
+        }
     }
 
-    private static void applyTop(Deque<Double> values, Deque<Character> ops) {
-        if (values.size() < 2 || ops.isEmpty()) return;
-        double b = values.pop();
-        double a = values.pop();
-        char op = ops.pop();
-        switch (op) {
-            case '+': values.push(a + b); break;
-            case '-': values.push(a - b); break;
-            case '*': values.push(a * b); break;
-            case '/': values.push(b == 0 ? 0 : a / b); break;
-            default: break;
+    /**
+     * rand() 在 [0, 1) 内，rand(max) 在 [0, max) 内，rand(min, max) 在 [min, max) 内均匀随机
+     */
+    private static final class Rand implements Expression {
+        private final Expression min, max;
+        Rand(Expression min, Expression max) { this.min = min; this.max = max; }
+        public double eval(double[] slots, RandomSource random) {
+            double lo = min == null ? 0 : min.eval(slots, random);
+            double hi = max == null ? 1 : max.eval(slots, random);
+            return lo + random.nextDouble() * (hi - lo);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,54 @@
+package com.yirankuma.yritems.node;
+
+/**
+ * GAUSSIAN 节点：以 base 为均值、|base| * spread 为标准差的正态随机，并按 maxSpread 截断
+ */
+final class GaussianNode extends CompiledNode {
+    private final double base;
+    private final double sigma;
+    private final double clampLow;
+    private final double clampHigh;
+    private final boolean hasMin;
+    private final double min;
+    private final boolean hasMax;
+    private final double max;
+    private final Rounding rounding;
+
+    GaussianNode(NodeDefinition def) {
+        super(def.getId(), NodeType.GAUSSIAN);
+        this.base = def.getDouble("base", 0);
+        double spread = def.getDouble("spread", 0.1);
+        double maxSpread = def.getDouble("maxSpread", 1.0);
+        this.sigma = Math.abs(base) * spread;
+        this.clampLow = base - Math.abs(base) * maxSpread;
+        this.clampHigh = base + Math.abs(base) * maxSpread;
+        this.hasMin = def.getOptions().containsKey("min");
+        this.min = def.getDouble("min", Double.NEGATIVE_INFINITY);
+        this.hasMax = def.getOptions().containsKey("max");
+        this.max = def.getDouble("max", Double.POSITIVE_INFINITY);
+        this.rounding = Rounding.of(def, 1);
+    }
+
+    @Override
+    boolean isNumeric() {
+        return true;
+    }
+
+    @Override
+    void evaluate(NodeEvaluator evaluator, EvalContext ctx) {
+        double g = evaluator.random().nextGaussian();
+        double val = base + g * sigma;
+        val = Math.max(clampLow, Math.min(clampHigh, val));
+        if (hasMin) val = Math.max(min, val);
+        if (hasMax) val = Math.min(max, val);
+        ctx.setNumber(getSlot(), rounding.apply(val));
+    }
+
+    @Override
+    boolean fold(NodeEvaluator evaluator, EvalContext ctx) {
+        // 标准差为 0 或截断范围退化为一点
+        if (sigma != 0 && clampLow != clampHigh) return false;
+        evaluate(evaluator, ctx);
+        return true;
+    }
+}
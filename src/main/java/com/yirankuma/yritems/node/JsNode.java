@@ -0,0 +1,64 @@
+package com.yirankuma.yritems.node;
+
+import com.yirankuma.yritems.YRItems;
+import com.yirankuma.yritems.script.FunctionHandle;
+import com.yirankuma.yritems.script.ItemsScriptEngineManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * JS 节点：调用 "脚本文件::函数名" 指定的函数，参数为 args 列表
+ * 路径在绑定脚本引擎时解析为函数句柄，脚本重载后在下次求值时重新解析
+ * pure: true (或函数带 @Pure 注解) 时结果按路径和参数缓存
+ */
+final class JsNode extends CompiledNode {
+    private final String path;
+    private final List<String> args;
+    /** 预先转换好的调用参数，每次调用复用 */
+    private final Object[] jsArgs;
+    private final boolean pure;
+    private FunctionHandle handle;
+
+    JsNode(NodeDefinition def) {
+        super(def.getId(), NodeType.JS);
+        this.path = def.getString("path", "");
+        List<String> list = def.getStringList("args");
+        this.args = list == null ? Collections.<String>emptyList()
+                : Collections.unmodifiableList(new ArrayList<>(list));
+        this.jsArgs = this.args.toArray();
+        this.pure = def.getBoolean("pure", false);
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return false;
+    }
+
+    @Override
+    void bindScripts(ItemsScriptEngineManager engine) {
+        handle = engine.resolveFunction(path);
+    }
+
+    @Override
+    void evaluate(NodeEvaluator evaluator, EvalContext ctx) {
+        ItemsScriptEngineManager engine = YRItems.getInstance().getScriptEngine();
+        FunctionHandle h = handle;
+        if (h == null || !h.isBoundTo(engine)) {
+            h = engine.resolveFunction(path);
+            handle = h;
+        }
+        Object result = engine.call(h, jsArgs, pure);
+        if (result == null) {
+            ctx.setString(getSlot(), "");
+            return;
+        }
+        try {
+            double d = Double.parseDouble(String.valueOf(result));
+            ctx.setNumber(getSlot(), d);
+        } catch (Exception e) {
+            ctx.setString(getSlot(), String.valueOf(result));
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package com.yirankuma.yritems.node;
+
+import com.yirankuma.yritems.script.ItemsScriptEngineManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 节点执行计划
+ * 在配置加载时由 sections 编译一次，之后每次生成物品只需执行该计划
+ *
+ * 编译时根据公式中的 &lt;id&gt; 引用建立依赖图，节点按依赖顺序排列
+ * (被依赖的节点先求值)。循环依赖会被记录下来，循环中的节点按声明顺序排在其依赖之后
+ * 排序后进行常量折叠：与随机数无关且依赖都是常量的节点在编译时求值一次，替换为 {@link ConstantNode}
+ */
+public final class NodePlan {
+    public static final NodePlan EMPTY = new NodePlan(new CompiledNode[0], new int[0][],
+            Collections.<String, Integer>emptyMap(), Collections.<List<String>>emptyList(),
+            Collections.<String>emptyList(), 0);
+
+    /** 按求值顺序排列的节点 */
+    private final CompiledNode[] nodes;
+    /** 每个节点依赖的节点下标 */
+    private final int[][] dependencies;
+    /** 节点ID及别名 -> 节点下标 */
+    private final Map<String, Integer> index;
+    private final List<List<String>> cycles;
+    /** 折叠为常量的节点ID */
+    private final List<String> folded;
+    /** 数值槽位数量 (裁剪后的计划沿用完整计划的槽位编号) */
+    private final int slotCount;
+
+    private NodePlan(CompiledNode[] nodes, int[][] dependencies, Map<String, Integer> index,
+                     List<List<String>> cycles, List<String> folded, int slotCount) {
+        this.nodes = nodes;
+        this.dependencies = dependencies;
+        this.index = index;
+        this.cycles = cycles;
+        this.folded = folded;
+        this.slotCount = slotCount;
+    }
+
+    /**
+     * 编译节点定义
+     * @param defs 节点定义 (可为 null)，迭代顺序即声明顺序
+     * @return 不可变的执行计划
+     */
+    public static NodePlan compile(Map<String, NodeDefinition> defs) {
+        if (defs == null || defs.isEmpty()) return EMPTY;
+        List<CompiledNode> declared = new ArrayList<>(defs.size());
+        for (NodeDefinition def : defs.values()) {
+            CompiledNode node = CompiledNode.compile(def);
+            if (node != null) declared.add(node);
+        }
+        if (declared.isEmpty()) return EMPTY;
+
+        int n = declared.size();
+        Map<String, Integer> names = buildIndex(declared);
+        int[][] edges = new int[n][];
+        for (int i = 0; i < n; i++) {
+            List<String> refs = declared.get(i).getReferences();
+            int[] tmp = new int[refs.size()];
+            int count = 0;
+            for (String ref : refs) {
+                Integer target = names.get(ref);
+                if (target != null) tmp[count++] = target;
+            }
+            edges[i] = count == tmp.length ? tmp : Arrays.copyOf(tmp, count);
+        }
+
+        Tarjan tarjan = new Tarjan(edges);
+        for (int i = 0; i < n; i++) {
+            if (tarjan.order[i] < 0) tarjan.visit(i);
+        }
+
+        // Tarjan 按 "依赖先出" 的顺序输出强连通分量，正好是求值顺序
+        CompiledNode[] ordered = new CompiledNode[n];
+        int[] position = new int[n];
+        List<List<String>> cycles = new ArrayList<>();
+        int pos = 0;
+        for (List<Integer> component : tarjan.components) {
+            if (component.size() > 1) Collections.sort(component);
+            boolean cyclic = component.size() > 1 || contains(edges[component.get(0)], component.get(0));
+            if (cyclic) {
+                List<String> ids = new ArrayList<>(component.size());
+                for (int idx : component) ids.add(declared.get(idx).getId());
+                cycles.add(Collections.unmodifiableList(ids));
+            }
+            for (int idx : component) {
+                ordered[pos] = declared.get(idx);
+                position[idx] = pos;
+                pos++;
+            }
+        }
+        int[][] dependencies = new int[n][];
+        for (int i = 0; i < n; i++) {
+            int[] deps = new int[edges[i].length];
+            for (int j = 0; j < deps.length; j++) deps[j] = position[edges[i][j]];
+            dependencies[position[i]] = deps;
+        }
+        List<CompiledNode> orderedList = new ArrayList<>(n);
+        Collections.addAll(orderedList, ordered);
+        Map<String, Integer> index = buildIndex(orderedList);
+        // 槽位即节点在完整计划中的位置
+        for (int i = 0; i < n; i++) ordered[i].setSlot(i);
+        for (CompiledNode node : ordered) node.link(index, ordered);
+        List<String> folded = foldConstants(ordered, dependencies, n);
+        return new NodePlan(ordered, dependencies, index, Collections.unmodifiableList(cycles), folded, n);
+    }
+
+    /**
+     * 只保留从给定引用名可达的节点 (及其依赖)，顺序不变
+     * @param roots 物品名称、Lore、NBT 中引用的节点名
+     */
+    public NodePlan restrictTo(Collection<String> roots) {
+        if (nodes.length == 0) return this;
+        boolean[] reachable = new boolean[nodes.length];
+        int[] stack = new int[nodes.length];
+        int top = 0;
+        for (String root : roots) {
+            Integer idx = index.get(root);
+            if (idx != null && !reachable[idx]) {
+                reachable[idx] = true;
+                stack[top++] = idx;
+            }
+        }
+        while (top > 0) {
+            int cur = stack[--top];
+            for (int dep : dependencies[cur]) {
+                if (!reachable[dep]) {
+                    reachable[dep] = true;
+                    stack[top++] = dep;
+                }
+            }
+        }
+
+        int[] remap = new int[nodes.length];
+        int count = 0;
+        for (int i = 0; i < nodes.length; i++) {
+            remap[i] = reachable[i] ? count++ : -1;
+        }
+        if (count == nodes.length) return this;
+        if (count == 0) return EMPTY;
+
+        CompiledNode[] kept = new CompiledNode[count];
+        int[][] keptDeps = new int[count][];
+        for (int i = 0; i < nodes.length; i++) {
+            if (remap[i] < 0) continue;
+            kept[remap[i]] = nodes[i];
+            int[] deps = new int[dependencies[i].length];
+            for (int j = 0; j < deps.length; j++) deps[j] = remap[dependencies[i][j]];
+            keptDeps[remap[i]] = deps;
+        }
+        List<CompiledNode> keptList = new ArrayList<>(count);
+        Collections.addAll(keptList, kept);
+        List<List<String>> keptCycles = new ArrayList<>();
+        for (List<String> cycle : cycles) {
+            if (reachable[index.get(cycle.get(0))]) keptCycles.add(cycle);
+        }
+        List<String> keptFolded = new ArrayList<>();
+        for (String id : folded) {
+            if (reachable[index.get(id)]) keptFolded.add(id);
+        }
+        return new NodePlan(kept, keptDeps, buildIndex(keptList), Collections.unmodifiableList(keptCycles),
+                Collections.unmodifiableList(keptFolded), slotCount);
+    }
+
+    public boolean isEmpty() {
+        return nodes.length == 0;
+    }
+
+    public int size() {
+        return nodes.length;
+    }
+
+    /**
+     * 计划中的节点都不依赖脚本引擎，可以在任意线程并行求值
+     */
+    public boolean isThreadSafe() {
+        for (CompiledNode node : nodes) {
+            if (!node.isThreadSafe()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 按求值顺序返回所有节点
+     */
+    public List<CompiledNode> getNodes() {
+        List<CompiledNode> list = new ArrayList<>(nodes.length);
+        Collections.addAll(list, nodes);
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * 按求值顺序返回节点ID
+     */
+    public List<String> getOrder() {
+        List<String> ids = new ArrayList<>(nodes.length);
+        for (CompiledNode node : nodes) ids.add(node.getId());
+        return ids;
+    }
+
+    /**
+     * 检测到的循环依赖，每一项为循环中的节点ID
+     */
+    public List<List<String>> getCycles() {
+        return cycles;
+    }
+
+    /**
+     * 编译时折叠为常量的节点ID
+     */
+    public List<String> getFolded() {
+        return folded;
+    }
+
+    /**
+     * 所有节点都已折叠为常量，每次求值的结果都相同
+     */
+    public boolean isConstant() {
+        for (CompiledNode node : nodes) {
+            if (!(node instanceof ConstantNode)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 把 JS 节点的函数路径解析为脚本引擎中的句柄，脚本引擎加载或重载后调用
+     */
+    public void bindScripts(ItemsScriptEngineManager engine) {
+        if (engine == null) return;
+        for (CompiledNode node : nodes) node.bindScripts(engine);
+    }
+
+    /**
+     * 节点名 (或别名) 对应的槽位
+     * @return 计划中不存在时返回 -1
+     */
+    public int slotOf(String name) {
+        Integer i = index.get(name);
+        return i == null ? -1 : nodes[i].getSlot();
+    }
+
+    /**
+     * 计划中所有节点ID及别名
+     */
+    public Collection<String> getNames() {
+        return index.keySet();
+    }
+
+    /**
+     * 执行计划，结果按槽位保存在返回的上下文中
+     */
+    public EvalContext run(NodeEvaluator evaluator) {
+        EvalContext ctx = new EvalContext(this, slotCount);
+        for (CompiledNode node : nodes) {
+            node.evaluate(evaluator, ctx);
+        }
+        return ctx;
+    }
+
+    /**
+     * 执行计划，返回 节点ID(及别名) -> 结果
+     */
+    public Map<String, NodeResult> evaluate(NodeEvaluator evaluator) {
+        return run(evaluator).toMap();
+    }
+
+    /**
+     * 常量折叠：依赖都已折叠的节点尝试在编译时求值，成功的替换为 {@link ConstantNode}
+     * @param nodes 按求值顺序排列的节点，会被原地替换
+     * @return 折叠的节点ID
+     */
+    private static List<String> foldConstants(CompiledNode[] nodes, int[][] dependencies, int slotCount) {
+        NodeEvaluator evaluator = new NodeEvaluator(RandomSource.seeded(0));
+        EvalContext ctx = new EvalContext(null, slotCount);
+        boolean[] constant = new boolean[nodes.length];
+        List<String> folded = new ArrayList<>();
+        for (int i = 0; i < nodes.length; i++) {
+            boolean ready = true;
+            for (int dep : dependencies[i]) {
+                // 依赖排在后面 (循环依赖) 时也不会被标记为常量
+                if (!constant[dep]) {
+                    ready = false;
+                    break;
+                }
+            }
+            if (!ready) continue;
+            try {
+                if (!nodes[i].fold(evaluator, ctx)) continue;
+            } catch (RuntimeException e) {
+                continue;
+            }
+            constant[i] = true;
+            nodes[i] = new ConstantNode(nodes[i], ctx);
+            folded.add(nodes[i].getId());
+        }
+        return folded.isEmpty() ? Collections.<String>emptyList() : Collections.unmodifiableList(folded);
+    }
+
+    private static Map<String, Integer> buildIndex(List<CompiledNode> nodes) {
+        Map<String, Integer> names = new LinkedHashMap<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            names.put(nodes.get(i).getId(), i);
+        }
+        // 别名不覆盖同名节点
+        for (int i = 0; i < nodes.size(); i++) {
+            String alias = nodes.get(i).getAlias();
+            if (alias != null && !names.containsKey(alias)) names.put(alias, i);
+        }
+        return Collections.unmodifiableMap(names);
+    }
+
+    private static boolean contains(int[] arr, int v) {
+        for (int x : arr) if (x == v) return true;
+        return false;
+    }
+
+    /**
+     * Tarjan 强连通分量算法
+     */
+    private static final class Tarjan {
+        private final int[][] edges;
+        private final int[] order;
+        private final int[] low;
+        private final boolean[] onStack;
+        private final int[] stack;
+        private int top;
+        private int counter;
+        private final List<List<Integer>> components = new ArrayList<>();
+
+        Tarjan(int[][] edges) {
+            this.edges = edges;
+            this.order = new int[edges.length];
+            this.low = new int[edges.length];
+            this.onStack = new boolean[edges.length];
+            this.stack = new int[edges.length];
+            Arrays.fill(order, -1);
+        }
+
+        void visit(int v) {
+            order[v] = low[v] = counter++;
+            stack[top++] = v;
+            onStack[v] = true;
+            for (int w : edges[v]) {
+                if (order[w] < 0) {
+                    visit(w);
+                    low[v] = Math.min(low[v], low[w]);
+                } else if (onStack[w]) {
+                    low[v] = Math.min(low[v], order[w]);
+                }
+            }
+            if (low[v] == order[v]) {
+                List<Integer> component = new ArrayList<>();
+                int w;
+                do {
+                    w = stack[--top];
+                    onStack[w] = false;
+                    component.add(w);
+                } while (w != v);
+                components.add(component);
+            }
+        }
+    }
+}
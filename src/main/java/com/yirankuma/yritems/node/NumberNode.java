@@ -0,0 +1,35 @@
+package com.yirankuma.yritems.node;
+
+/**
+ * NUMBER 节点：在 [min, max) 内均匀随机
+ */
+final class NumberNode extends CompiledNode {
+    private final double min;
+    private final double max;
+    private final Rounding rounding;
+
+    NumberNode(NodeDefinition def) {
+        super(def.getId(), NodeType.NUMBER);
+        this.min = def.getDouble("min", 0);
+        this.max = def.getDouble("max", 0);
+        this.rounding = Rounding.of(def, 0);
+    }
+
+    @Override
+    boolean isNumeric() {
+        return true;
+    }
+
+    @Override
+    void evaluate(NodeEvaluator evaluator, EvalContext ctx) {
+        double val = min + evaluator.random().nextDouble() * (max - min);
+        ctx.setNumber(getSlot(), rounding.apply(val));
+    }
+
+    @Override
+    boolean fold(NodeEvaluator evaluator, EvalContext ctx) {
+        if (min != max) return false;
+        ctx.setNumber(getSlot(), rounding.apply(min));
+        return true;
+    }
+}
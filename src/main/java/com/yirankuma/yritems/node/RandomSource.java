@@ -0,0 +1,49 @@
+package com.yirankuma.yritems.node;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 节点求值使用的随机源
+ * 实现不要求线程安全，每个线程使用 {@link #current()} 返回的独立实例，互不竞争
+ */
+public interface RandomSource {
+
+    long nextLong();
+
+    /**
+     * @return [0, bound) 内均匀分布的整数
+     */
+    int nextInt(int bound);
+
+    /**
+     * @return [0, 1) 内均匀分布的小数
+     */
+    double nextDouble();
+
+    /**
+     * @return 标准正态分布随机数
+     */
+    double nextGaussian();
+
+    /**
+     * 当前线程的高速随机源 (xoroshiro128++，ziggurat 正态)
+     */
+    static RandomSource current() {
+        return XoroshiroRandom.CURRENT.get();
+    }
+
+    /**
+     * 新的高速随机源，种子随机
+     */
+    static RandomSource fast() {
+        return new XoroshiroRandom(ThreadLocalRandom.current().nextLong() ^ System.nanoTime());
+    }
+
+    /**
+     * 由种子确定的随机源
+     * 基于 {@link java.util.SplittableRandom}，算法固定不变，种子紧凑编码的物品依赖其输出可复现
+     */
+    static RandomSource seeded(long seed) {
+        return new SeededRandom(seed);
+    }
+}
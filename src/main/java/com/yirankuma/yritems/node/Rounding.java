@@ -0,0 +1,99 @@
+package com.yirankuma.yritems.node;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * 已解析的取整规则 (fixed + mode)
+ * 在编译节点时解析一次，运行时直接使用
+ *
+ * 结果与 BigDecimal.valueOf(val).setScale(fixed, mode).doubleValue() 一致。
+ * 常见情况下用 double 运算完成，不创建对象；只有缩放后的值过大、
+ * 或离取整边界太近无法确定十进制表示落在哪一侧时才退回 BigDecimal
+ */
+final class Rounding {
+    /** 精确可表示的 10 的幂 */
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    /** 缩放后的绝对值超过该值时走 BigDecimal */
+    private static final double FAST_LIMIT = 1e15;
+    /** 判断恰好为中点时要求的精度，保证 scale + 1 位小数的中点能由 double 唯一确定 */
+    private static final double TIE_GUARD_LIMIT = 0.05;
+
+    private final int scale;
+    private final RoundingMode mode;
+    /** 10^scale，不能精确表示时为 0，只走 BigDecimal */
+    private final double factor;
+
+    private Rounding(int scale, RoundingMode mode) {
+        this.scale = scale;
+        this.mode = mode;
+        this.factor = scale < POW10.length && mode != RoundingMode.UNNECESSARY ? POW10[scale] : 0;
+    }
+
+    static Rounding of(int fixed, String modeStr) {
+        RoundingMode mode;
+        try {
+            mode = RoundingMode.valueOf(modeStr);
+        } catch (Exception e) {
+            mode = RoundingMode.HALF_UP;
+        }
+        return new Rounding(Math.max(fixed, 0), mode);
+    }
+
+    static Rounding of(NodeDefinition def, int defaultFixed) {
+        return of(def.getInt("fixed", defaultFixed), def.getString("mode", "HALF_UP"));
+    }
+
+    double apply(double val) {
+        if (factor != 0) {
+            double x = val * factor;
+            // NaN、无穷大也在这里排除
+            if (Math.abs(x) < FAST_LIMIT) {
+                double n = Math.rint(x);
+                // 小数位数本来就不超过 scale
+                if (n / factor == val) return val == 0 ? 0.0 : val;
+                // x 与 val 的十进制表示放大后之差不超过约 1.5 ulp
+                double guard = 4 * Math.max(Math.ulp(x), Math.ulp(val) * factor);
+                double r = round(x, val, guard);
+                if (!Double.isNaN(r)) return r == 0 ? 0.0 : r / factor;
+            }
+        }
+        BigDecimal bd = BigDecimal.valueOf(val);
+        bd = bd.setScale(scale, mode);
+        return bd.doubleValue();
+    }
+
+    /**
+     * 把放大后的值取整
+     * @return 离边界不足 guard 无法确定时返回 NaN
+     */
+    private double round(double x, double val, double guard) {
+        double floor = Math.floor(x);
+        double frac = x - floor;
+        switch (mode) {
+            case HALF_UP:
+            case HALF_DOWN:
+            case HALF_EVEN:
+                if (Math.abs(frac - 0.5) > guard) return frac < 0.5 ? floor : floor + 1;
+                // val 恰好是两个候选值的中点时按模式处理，否则无法确定
+                if (guard >= TIE_GUARD_LIMIT || (floor + 0.5) / factor != val) return Double.NaN;
+                if (mode == RoundingMode.HALF_EVEN) return floor % 2 == 0 ? floor : floor + 1;
+                return (mode == RoundingMode.HALF_UP) == (x >= 0) ? floor + 1 : floor;
+            default:
+                if (frac <= guard || 1 - frac <= guard) return Double.NaN;
+                switch (mode) {
+                    case FLOOR:
+                        return floor;
+                    case CEILING:
+                        return floor + 1;
+                    case DOWN:
+                        return x < 0 ? floor + 1 : floor;
+                    default:
+                        return x < 0 ? floor : floor + 1;
+                }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.yirankuma.yritems.node;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CALCULATION 公式的参数化形式
+ * 把 &lt;id&gt; 引用改写为参数 __p0, __p1 ...，使同一公式只需编译一次
+ * 字符串字面量中的引用改写为字符串拼接，拼接的文本与旧的文本替换结果一致
+ */
+final class ScriptFormula {
+    /** 改写后的表达式源码 */
+    final String source;
+    private final String[] names;
+    private final int[] slots;
+    private final boolean[] asText;
+
+    private ScriptFormula(String source, List<String> names, List<Integer> slots, List<Boolean> asText) {
+        this.source = source;
+        this.names = names.toArray(new String[0]);
+        this.slots = new int[slots.size()];
+        this.asText = new boolean[asText.size()];
+        for (int i = 0; i < this.slots.length; i++) {
+            this.slots[i] = slots.get(i);
+            this.asText[i] = asText.get(i);
+        }
+    }
+
+    static ScriptFormula parse(String formula, Map<String, Integer> slotIndex) {
+        StringBuilder sb = new StringBuilder(formula.length() + 16);
+        List<String> names = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        List<Boolean> asText = new ArrayList<>();
+        char quote = 0;
+        int quoteStart = 0;
+        boolean wrapped = false;
+        int i = 0;
+        while (i < formula.length()) {
+            char c = formula.charAt(i);
+            if (quote != 0 && c == '\\' && i + 1 < formula.length()) {
+                sb.append(c).append(formula.charAt(i + 1));
+                i += 2;
+                continue;
+            }
+            if (c == '<') {
+                int end = referenceEnd(formula, i);
+                Integer slot = end < 0 ? null : slotIndex.get(formula.substring(i + 1, end));
+                if (slot != null) {
+                    String name = formula.substring(i + 1, end);
+                    boolean text = quote != 0;
+                    int param = paramIndex(names, asText, name, text);
+                    if (param < 0) {
+                        param = names.size();
+                        names.add(name);
+                        slots.add(slot);
+                        asText.add(text);
+                    }
+                    if (text) {
+                        // 拼接后的字符串整体加括号，避免影响后续的运算优先级
+                        if (!wrapped) {
+                            sb.insert(quoteStart, '(');
+                            wrapped = true;
+                        }
+                        sb.append(quote).append(" + __p").append(param).append(" + ").append(quote);
+                    } else {
+                        sb.append("__p").append(param);
+                    }
+                    i = end + 1;
+                    continue;
+                }
+            }
+            if (c == '"' || c == '\'') {
+                if (quote == 0) {
+                    quote = c;
+                    quoteStart = sb.length();
+                    wrapped = false;
+                } else if (quote == c) {
+                    quote = 0;
+                    if (wrapped) {
+                        sb.append(c).append(')');
+                        i++;
+                        continue;
+                    }
+                }
+            }
+            sb.append(c);
+            i++;
+        }
+        return new ScriptFormula(sb.toString(), names, slots, asText);
+    }
+
+    int paramCount() {
+        return names.length;
+    }
+
+    /**
+     * 组装调用参数
+     * 数值结果以数字传入，字符串字面量中的引用以文本传入
+     * @return 引用的节点尚未求值 (如循环依赖) 时返回 null
+     */
+    Object[] bind(EvalContext ctx) {
+        Object[] args = new Object[names.length];
+        for (int i = 0; i < names.length; i++) {
+            int slot = slots[i];
+            if (!ctx.has(slot)) return null;
+            if (asText[i]) {
+                args[i] = ctx.getString(slot);
+            } else {
+                double v = ctx.numbers[slot];
+                args[i] = Double.isNaN(v) ? ctx.getString(slot) : (Object) v;
+            }
+        }
+        return args;
+    }
+
+    private static int referenceEnd(String s, int start) {
+        for (int j = start + 1; j < s.length(); j++) {
+            char c = s.charAt(j);
+            if (c == '>') return j > start + 1 ? j : -1;
+            if (c == '<' || Character.isWhitespace(c)) return -1;
+        }
+        return -1;
+    }
+
+    private static int paramIndex(List<String> names, List<Boolean> asText, String name, boolean text) {
+        for (int i = 0; i < names.size(); i++) {
+            if (names.get(i).equals(name) && asText.get(i) == text) return i;
+        }
+        return -1;
+    }
+}
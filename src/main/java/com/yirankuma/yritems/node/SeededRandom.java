@@ -0,0 +1,52 @@
+package com.yirankuma.yritems.node;
+
+import java.util.SplittableRandom;
+
+/**
+ * 由种子确定的随机源
+ * 整数与小数直接取自 SplittableRandom，正态分布为 Marsaglia 极坐标法 (与 java.util.Random 相同)
+ * 输出序列必须保持不变，修改会导致已有的紧凑编码物品重建出不同的属性
+ */
+final class SeededRandom implements RandomSource {
+    private final SplittableRandom random;
+    /** 极坐标法每次生成两个正态随机数，缓存其中一个 */
+    private double nextNextGaussian;
+    private boolean haveNextNextGaussian;
+
+    SeededRandom(long seed) {
+        this.random = new SplittableRandom(seed);
+    }
+
+    @Override
+    public long nextLong() {
+        return random.nextLong();
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        return random.nextInt(bound);
+    }
+
+    @Override
+    public double nextDouble() {
+        return random.nextDouble();
+    }
+
+    @Override
+    public double nextGaussian() {
+        if (haveNextNextGaussian) {
+            haveNextNextGaussian = false;
+            return nextNextGaussian;
+        }
+        double v1, v2, s;
+        do {
+            v1 = 2 * random.nextDouble() - 1;
+            v2 = 2 * random.nextDouble() - 1;
+            s = v1 * v1 + v2 * v2;
+        } while (s >= 1 || s == 0);
+        double multiplier = StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+        nextNextGaussian = v2 * multiplier;
+        haveNextNextGaussian = true;
+        return v1 * multiplier;
+    }
+}
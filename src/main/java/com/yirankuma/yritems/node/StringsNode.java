@@ -0,0 +1,31 @@
+package com.yirankuma.yritems.node;
+
+import java.util.List;
+
+/**
+ * STRINGS 节点：从字符串列表中等概率随机选取一个
+ */
+final class StringsNode extends CompiledNode {
+    private final String[] values;
+
+    StringsNode(NodeDefinition def) {
+        super(def.getId(), NodeType.STRINGS);
+        List<String> list = def.getStringList("values");
+        this.values = new String[list == null ? 0 : list.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = String.valueOf(list.get(i));
+        }
+    }
+
+    @Override
+    void evaluate(NodeEvaluator evaluator, EvalContext ctx) {
+        ctx.setString(getSlot(), values.length == 0 ? "" : values[evaluator.random().nextInt(values.length)]);
+    }
+
+    @Override
+    boolean fold(NodeEvaluator evaluator, EvalContext ctx) {
+        if (values.length > 1) return false;
+        ctx.setString(getSlot(), values.length == 0 ? "" : values[0]);
+        return true;
+    }
+}
@@ -0,0 +1,123 @@
+package com.yirankuma.yritems.node;
+
+/**
+ * WEIGHTDECLARE 节点：按权重不放回地选取 amount 个条目
+ * shuffled 打乱结果，order 按声明顺序排列，putelse 额外输出未选中的条目
+ *
+ * 抽样在预构建树状数组的副本上进行，每次选取 O(log n)；
+ * 排序和未选列表基于下标位图，无需在字符串列表中查找；结果以下标形式写入上下文，不复制字符串
+ */
+final class WeightDeclareNode extends CompiledNode {
+    private static final int[] NONE = new int[0];
+
+    private final WeightTable table;
+    private final String key;
+    private final int amount;
+    private final boolean shuffled;
+    private final boolean putelse;
+    private final boolean order;
+    /** 树状数组二分查找的起始步长 */
+    private final int topStep;
+
+    WeightDeclareNode(NodeDefinition def) {
+        super(def.getId(), NodeType.WEIGHTDECLARE);
+        this.table = WeightTable.parse(def.getStringList("list"));
+        this.key = def.getString("key", def.getId());
+        this.amount = def.getInt("amount", 1);
+        this.shuffled = def.getBoolean("shuffled", false);
+        this.putelse = def.getBoolean("putelse", false);
+        this.order = def.getBoolean("order", false);
+        this.topStep = table.isEmpty() ? 0 : Integer.highestOneBit(table.size());
+    }
+
+    @Override
+    public String getAlias() {
+        return key;
+    }
+
+    @Override
+    void evaluate(NodeEvaluator evaluator, EvalContext ctx) {
+        int n = table.size();
+        int k = Math.max(0, Math.min(amount, n));
+        int[] tree = table.newFenwickTree();
+        long[] picked = new long[(n + 63) >>> 6];
+        int[] selected = new int[k];
+        int remaining = table.total();
+        for (int i = 0; i < k; i++) {
+            int pick;
+            if (remaining > 0) {
+                pick = find(tree, evaluator.random().nextInt(remaining));
+                int w = Math.max(table.weight(pick), 0);
+                remaining -= w;
+                for (int j = pick + 1; j <= n; j += j & -j) tree[j] -= w;
+            } else {
+                // 剩余条目权重都为 0 时按声明顺序取第一个
+                pick = nextClear(picked, 0);
+            }
+            picked[pick >>> 6] |= 1L << pick;
+            selected[i] = pick;
+        }
+
+        if (shuffled) {
+            for (int i = k - 1; i > 0; i--) {
+                int j = evaluator.random().nextInt(i + 1);
+                int tmp = selected[i];
+                selected[i] = selected[j];
+                selected[j] = tmp;
+            }
+        } else if (order) {
+            // 按声明顺序输出
+            int i = 0;
+            for (int idx = nextSet(picked, 0); idx >= 0; idx = nextSet(picked, idx + 1)) {
+                selected[i++] = idx;
+            }
+        }
+
+        int[] unselected = NONE;
+        if (putelse && n > k) {
+            unselected = new int[n - k];
+            int i = 0;
+            for (int idx = nextClear(picked, 0); idx >= 0 && idx < n; idx = nextClear(picked, idx + 1)) {
+                unselected[i++] = idx;
+            }
+        }
+        ctx.setList(getSlot(), table.values(), selected, unselected);
+    }
+
+    /**
+     * 在树状数组中找到累计权重首次超过 r 的下标 (从 0 开始)
+     */
+    private int find(int[] tree, int r) {
+        int pos = 0;
+        for (int step = topStep; step > 0; step >>= 1) {
+            int next = pos + step;
+            if (next < tree.length && tree[next] <= r) {
+                pos = next;
+                r -= tree[next];
+            }
+        }
+        return pos;
+    }
+
+    private static int nextSet(long[] bits, int from) {
+        int word = from >>> 6;
+        if (word >= bits.length) return -1;
+        long w = bits[word] & (-1L << from);
+        while (true) {
+            if (w != 0) return (word << 6) + Long.numberOfTrailingZeros(w);
+            if (++word == bits.length) return -1;
+            w = bits[word];
+        }
+    }
+
+    private static int nextClear(long[] bits, int from) {
+        int word = from >>> 6;
+        if (word >= bits.length) return from;
+        long w = ~bits[word] & (-1L << from);
+        while (true) {
+            if (w != 0) return (word << 6) + Long.numberOfTrailingZeros(w);
+            if (++word == bits.length) return bits.length << 6;
+            w = ~bits[word];
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.yirankuma.yritems.node;
+
+/**
+ * WEIGHT 节点：按权重从 "权重::文本" 列表中选取一个
+ */
+final class WeightNode extends CompiledNode {
+    private final WeightTable table;
+
+    WeightNode(NodeDefinition def) {
+        super(def.getId(), NodeType.WEIGHT);
+        this.table = WeightTable.parse(def.getStringList("values"));
+    }
+
+    @Override
+    void evaluate(NodeEvaluator evaluator, EvalContext ctx) {
+        int idx = table.sample(evaluator.random());
+        ctx.setString(getSlot(), idx < 0 ? "" : table.value(idx));
+    }
+
+    @Override
+    boolean fold(NodeEvaluator evaluator, EvalContext ctx) {
+        if (table.size() > 1) return false;
+        evaluate(evaluator, ctx);
+        return true;
+    }
+}
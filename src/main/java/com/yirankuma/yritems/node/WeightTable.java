@@ -0,0 +1,149 @@
+package com.yirankuma.yritems.node;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 预构建的权重表
+ * 由 "权重::文本" 形式的列表解析而来，相同文本的权重会合并，保持首次出现的顺序
+ *
+ * 加载时同时构建 Vose 别名表，{@link #sample(RandomSource)} 为常数时间且不分配内存。
+ * 别名表使用整数运算，抽样分布与按累计权重线性查找完全一致。
+ * 另外预构建树状数组，供 WEIGHTDECLARE 以 O(log n) 做不放回抽样
+ */
+final class WeightTable {
+    private final String[] values;
+    private final int[] weights;
+    private final int total;
+    /** 别名表：第 i 列以 prob[i] / total 的概率取 i，否则取 alias[i] */
+    private final int[] prob;
+    private final int[] alias;
+    /** 预构建的树状数组 (下标从 1 开始)，供不放回抽样复制使用 */
+    private final int[] fenwick;
+
+    private WeightTable(String[] values, int[] weights) {
+        this.values = values;
+        this.weights = weights;
+        int sum = 0;
+        for (int w : weights) sum += Math.max(w, 0);
+        this.total = sum;
+        this.prob = new int[values.length];
+        this.alias = new int[values.length];
+        if (total > 0) buildAliasTable();
+        this.fenwick = new int[values.length + 1];
+        for (int i = 1; i <= values.length; i++) {
+            fenwick[i] += Math.max(weights[i - 1], 0);
+            int parent = i + (i & -i);
+            if (parent <= values.length) fenwick[parent] += fenwick[i];
+        }
+    }
+
+    /**
+     * Vose 别名法
+     * 每列容量为 total，权重按 n 倍缩放后在列之间搬运，全部使用整数避免精度误差
+     */
+    private void buildAliasTable() {
+        int n = values.length;
+        long[] scaled = new long[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallTop = 0;
+        int largeTop = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = (long) Math.max(weights[i], 0) * n;
+            if (scaled[i] < total) small[smallTop++] = i;
+            else large[largeTop++] = i;
+        }
+        while (smallTop > 0 && largeTop > 0) {
+            int l = small[--smallTop];
+            int g = large[--largeTop];
+            prob[l] = (int) scaled[l];
+            alias[l] = g;
+            scaled[g] = scaled[g] + scaled[l] - total;
+            if (scaled[g] < total) small[smallTop++] = g;
+            else large[largeTop++] = g;
+        }
+        while (largeTop > 0) {
+            int g = large[--largeTop];
+            prob[g] = total;
+            alias[g] = g;
+        }
+        // 仅在整数运算下理论上不会出现，保险起见补满
+        while (smallTop > 0) {
+            int l = small[--smallTop];
+            prob[l] = total;
+            alias[l] = l;
+        }
+    }
+
+    static WeightTable parse(List<String> entries) {
+        if (entries == null) entries = Collections.emptyList();
+        Map<String, Integer> weightMap = new LinkedHashMap<>();
+        for (String s : entries) {
+            String[] parts = String.valueOf(s).split("::", 2);
+            if (parts.length < 2) continue;
+            int w = safeInt(parts[0], 0);
+            String text = parts[1];
+            weightMap.put(text, weightMap.getOrDefault(text, 0) + w);
+        }
+        String[] values = new String[weightMap.size()];
+        int[] weights = new int[weightMap.size()];
+        int i = 0;
+        for (Map.Entry<String, Integer> e : weightMap.entrySet()) {
+            values[i] = e.getKey();
+            weights[i] = e.getValue();
+            i++;
+        }
+        return new WeightTable(values, weights);
+    }
+
+    int size() {
+        return values.length;
+    }
+
+    boolean isEmpty() {
+        return values.length == 0;
+    }
+
+    String value(int index) {
+        return values[index];
+    }
+
+    /**
+     * 预构建的取值数组，调用方不得修改
+     */
+    String[] values() {
+        return values;
+    }
+
+    int weight(int index) {
+        return weights[index];
+    }
+
+    int total() {
+        return total;
+    }
+
+    /**
+     * 按权重抽取一个下标 (非正权重的条目不会被选中)
+     * @return 下标，所有权重都不为正时返回 -1
+     */
+    int sample(RandomSource random) {
+        if (total <= 0) return -1;
+        int column = random.nextInt(values.length);
+        return random.nextInt(total) < prob[column] ? column : alias[column];
+    }
+
+    /**
+     * 返回树状数组的副本，用于一次不放回抽样
+     */
+    int[] newFenwickTree() {
+        return fenwick.clone();
+    }
+
+    private static int safeInt(String s, int def) {
+        try { return Integer.parseInt(s.trim()); } catch (Exception e) { return def; }
+    }
+}
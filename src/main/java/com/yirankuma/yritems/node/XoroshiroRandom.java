@@ -0,0 +1,122 @@
+package com.yirankuma.yritems.node;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * xoroshiro128++ 随机源
+ * 无锁、无原子操作，正态分布使用 128 层 ziggurat (Marsaglia &amp; Tsang)，绝大多数情况下只需一次查表和乘法
+ */
+final class XoroshiroRandom implements RandomSource {
+
+    static final ThreadLocal<XoroshiroRandom> CURRENT = ThreadLocal.withInitial(
+            () -> new XoroshiroRandom(ThreadLocalRandom.current().nextLong() ^ System.nanoTime()));
+
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    /** ziggurat 表：第 i 层的接受阈值、宽度与密度值 */
+    private static final int LAYERS = 128;
+    private static final double R = 3.442619855899;
+    private static final int[] KN = new int[LAYERS];
+    private static final double[] WN = new double[LAYERS];
+    private static final double[] FN = new double[LAYERS];
+
+    static {
+        final double m1 = 2147483648.0;
+        final double vn = 9.91256303526217e-3;
+        double dn = R;
+        double tn = dn;
+        double q = vn / Math.exp(-.5 * dn * dn);
+        KN[0] = (int) ((dn / q) * m1);
+        KN[1] = 0;
+        WN[0] = q / m1;
+        WN[LAYERS - 1] = dn / m1;
+        FN[0] = 1.0;
+        FN[LAYERS - 1] = Math.exp(-.5 * dn * dn);
+        for (int i = LAYERS - 2; i >= 1; i--) {
+            dn = Math.sqrt(-2 * Math.log(vn / dn + Math.exp(-.5 * dn * dn)));
+            KN[i + 1] = (int) ((dn / tn) * m1);
+            tn = dn;
+            FN[i] = Math.exp(-.5 * dn * dn);
+            WN[i] = dn / m1;
+        }
+    }
+
+    private long s0;
+    private long s1;
+
+    XoroshiroRandom(long seed) {
+        // SplitMix64 展开种子，避免全零状态
+        long z = seed;
+        this.s0 = mix(z += 0x9E3779B97F4A7C15L);
+        this.s1 = mix(z + 0x9E3779B97F4A7C15L);
+        if ((s0 | s1) == 0) s1 = 0x9E3779B97F4A7C15L;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    @Override
+    public long nextLong() {
+        final long a = s0;
+        long b = s1;
+        final long result = Long.rotateLeft(a + b, 17) + a;
+        b ^= a;
+        s0 = Long.rotateLeft(a, 49) ^ b ^ (b << 21);
+        s1 = Long.rotateLeft(b, 28);
+        return result;
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        if (bound <= 0) throw new IllegalArgumentException("bound must be positive");
+        int r = (int) (nextLong() >>> 33);
+        int m = bound - 1;
+        if ((bound & m) == 0) return (int) ((bound * (long) r) >> 31);
+        for (int u = r; u - (r = u % bound) + m < 0; u = (int) (nextLong() >>> 33)) {
+            // 拒绝落在不完整区间的值，保证均匀
+        }
+        return r;
+    }
+
+    @Override
+    public double nextDouble() {
+        return (nextLong() >>> 11) * DOUBLE_UNIT;
+    }
+
+    @Override
+    public double nextGaussian() {
+        long bits = nextLong();
+        // 层号与数值取自不同的位，避免相关
+        int iz = (int) (bits & (LAYERS - 1));
+        int hz = (int) (bits >> 32);
+        if (Math.abs((long) hz) < KN[iz]) return hz * WN[iz];
+        return gaussianSlow(hz, iz);
+    }
+
+    /**
+     * 落在层边缘或尾部时的处理
+     */
+    private double gaussianSlow(int hz, int iz) {
+        while (true) {
+            double x = hz * WN[iz];
+            if (iz == 0) {
+                // 尾部：x > R 的部分
+                double y;
+                do {
+                    x = -Math.log(1.0 - nextDouble()) / R;
+                    y = -Math.log(1.0 - nextDouble());
+                } while (y + y < x * x);
+                return hz > 0 ? R + x : -R - x;
+            }
+            if (FN[iz] + nextDouble() * (FN[iz - 1] - FN[iz]) < Math.exp(-.5 * x * x)) return x;
+
+            long bits = nextLong();
+            iz = (int) (bits & (LAYERS - 1));
+            hz = (int) (bits >> 32);
+            if (Math.abs((long) hz) < KN[iz]) return hz * WN[iz];
+        }
+    }
+}
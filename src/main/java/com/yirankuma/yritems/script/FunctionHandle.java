@@ -0,0 +1,45 @@
+package com.yirankuma.yritems.script;
+
+import org.mozilla.javascript.Function;
+
+/**
+ * "脚本文件::函数名" 解析后的函数句柄
+ * 由 {@link ItemsScriptEngineManager#resolveFunction(String)} 创建，
+ * 脚本引擎重建或有脚本重新执行后失效，需要重新解析
+ */
+public final class FunctionHandle {
+    private final ItemsScriptEngineManager engine;
+    private final int generation;
+    private final String path;
+    /** 未找到函数时为 null */
+    final Function function;
+    /** 函数带 @Pure 注解，结果只取决于参数 */
+    final boolean pure;
+
+    FunctionHandle(ItemsScriptEngineManager engine, int generation, String path, Function function, boolean pure) {
+        this.engine = engine;
+        this.generation = generation;
+        this.path = path;
+        this.function = function;
+        this.pure = pure;
+    }
+
+    /**
+     * 句柄是否仍指向该引擎当前作用域中的函数
+     */
+    public boolean isBoundTo(ItemsScriptEngineManager current) {
+        return engine == current && current != null && generation == current.getGeneration();
+    }
+
+    public boolean isResolved() {
+        return function != null;
+    }
+
+    public boolean isPure() {
+        return pure;
+    }
+
+    public String getPath() {
+        return path;
+    }
+}
@@ -5,17 +5,23 @@ import cn.nukkit.event.Event;
 import cn.nukkit.event.EventPriority;
 import cn.nukkit.event.HandlerList;
 import cn.nukkit.event.Listener;
+import cn.nukkit.event.server.DataPacketSendEvent;
 import cn.nukkit.plugin.PluginManager;
 import com.yirankuma.yritems.YRItems;
+import com.yirankuma.yritems.lore.DynamicLoreRenderer;
 import org.mozilla.javascript.*;
 
 import java.io.File;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -24,12 +30,53 @@ import java.util.regex.Pattern;
  * 参考YRRoom实现，支持通过注解注册事件监听器
  */
 public class ItemsScriptEngineManager {
+    /** 编译后表达式缓存的最大条目数 */
+    private static final int EXPRESSION_CACHE_SIZE = 512;
+    /** 纯函数结果缓存的最大条目数 */
+    private static final int PURE_CACHE_SIZE = 1024;
+    /** 动态Lore脚本文件名，内置渲染器启用时不注册其数据包发送监听 */
+    private static final String DYNAMIC_LORE_SCRIPT = "DynamicLore.js";
+    /** 函数前一行的纯函数注解: // @Pure */
+    private static final Pattern PURE_PATTERN = Pattern.compile(
+        "(?:^|\\n)[ \\t]*//\\s*@Pure\\s*(?:\\(\\s*\\))?[ \\t]*\\r?\\n\\s*function\\s+(\\w+)\\s*\\(");
+
     private final YRItems plugin;
     private final File scriptsDir;
     private Context rhinoContext;
     private Scriptable scope;
     private final Map<String, String> loadedScripts = new HashMap<>();
     private final List<Listener> registeredListeners = new ArrayList<>();
+    /** 表达式源码 -> 编译结果，按访问顺序淘汰 */
+    private final Map<String, CompiledExpression> expressionCache =
+        new LinkedHashMap<String, CompiledExpression>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompiledExpression> eldest) {
+                return size() > EXPRESSION_CACHE_SIZE;
+            }
+        };
+    private long expressionCacheHits;
+    private long expressionCacheMisses;
+    /** 每执行一段脚本加一，作用域中的函数可能被重新定义，已解析的函数句柄随之失效 */
+    private volatile int generation;
+    /** 脚本路径 -> 函数句柄 */
+    private final Map<String, FunctionHandle> functionHandles = new HashMap<>();
+    /** 带 @Pure 注解的函数名 */
+    private final Set<String> pureFunctions = new HashSet<>();
+    /** (脚本路径, 参数) -> 纯函数的返回值，按访问顺序淘汰，执行脚本或卸载时清空 */
+    private final Map<PureKey, Object> pureCache =
+        new LinkedHashMap<PureKey, Object>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<PureKey, Object> eldest) {
+                if (size() > PURE_CACHE_SIZE) {
+                    pureCacheEvictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    private long pureCacheHits;
+    private long pureCacheMisses;
+    private long pureCacheEvictions;
 
     public ItemsScriptEngineManager(YRItems plugin) {
         this.plugin = plugin;
@@ -149,6 +196,12 @@ public class ItemsScriptEngineManager {
     public void evalScript(String scriptContent) {
         try {
             if (rhinoContext != null && scope != null) {
+                generation++;
+                // 脚本可能重新定义函数，已缓存的纯函数结果不再可信
+                clearPureCache();
+                synchronized (pureFunctions) {
+                    pureFunctions.addAll(extractPureFunctions(scriptContent));
+                }
                 rhinoContext.evaluateString(scope, scriptContent, "script", 1, null);
             }
         } catch (Exception e) {
@@ -169,39 +222,184 @@ public class ItemsScriptEngineManager {
         }
     }
 
+    /**
+     * 执行带参数的JS表达式
+     * 表达式按源码编译一次后缓存，参数依次绑定到变量 __p0, __p1 ...
+     *
+     * @param jsExpr 表达式源码
+     * @param args 参数值
+     * @return 执行结果，失败返回 null
+     */
+    public Object evalExpression(String jsExpr, Object[] args) {
+        try {
+            CompiledExpression compiled = getCompiledExpression(jsExpr, args.length);
+            return compiled.call(rhinoContext, scope, args);
+        } catch (Exception e) {
+            plugin.getLogger().warning("JS表达式执行失败: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private CompiledExpression getCompiledExpression(String jsExpr, int paramCount) {
+        synchronized (expressionCache) {
+            CompiledExpression compiled = expressionCache.get(jsExpr);
+            if (compiled != null && compiled.paramNames.length == paramCount) {
+                expressionCacheHits++;
+                return compiled;
+            }
+            expressionCacheMisses++;
+            compiled = CompiledExpression.compile(rhinoContext, scope, jsExpr, paramCount);
+            expressionCache.put(jsExpr, compiled);
+            return compiled;
+        }
+    }
+
+    /**
+     * 表达式缓存统计
+     */
+    public String getExpressionCacheStats() {
+        synchronized (expressionCache) {
+            long total = expressionCacheHits + expressionCacheMisses;
+            double rate = total == 0 ? 0 : expressionCacheHits * 100.0 / total;
+            return String.format("表达式缓存: %d/%d 条, 命中 %d, 未命中 %d, 命中率 %.1f%%",
+                expressionCache.size(), EXPRESSION_CACHE_SIZE, expressionCacheHits, expressionCacheMisses, rate);
+        }
+    }
+
+    /**
+     * 纯函数结果缓存统计
+     */
+    public String getPureCacheStats() {
+        synchronized (pureCache) {
+            long total = pureCacheHits + pureCacheMisses;
+            double rate = total == 0 ? 0 : pureCacheHits * 100.0 / total;
+            return String.format("纯函数缓存: %d/%d 条, 命中 %d, 未命中 %d, 淘汰 %d, 命中率 %.1f%%",
+                pureCache.size(), PURE_CACHE_SIZE, pureCacheHits, pureCacheMisses, pureCacheEvictions, rate);
+        }
+    }
+
+    private void clearPureCache() {
+        synchronized (pureCache) {
+            pureCache.clear();
+        }
+    }
+
+    /**
+     * 提取带 @Pure 注解的函数名
+     * 格式: 函数定义的前一行为 // @Pure
+     */
+    private static Set<String> extractPureFunctions(String scriptContent) {
+        Set<String> names = new HashSet<>();
+        Matcher matcher = PURE_PATTERN.matcher(scriptContent);
+        while (matcher.find()) {
+            names.add(matcher.group(1));
+        }
+        return names;
+    }
+
     /**
      * 调用脚本路径指定的函数
      */
     public Object invokePath(String path, List<String> args) {
-        try {
-            String[] parts = path.split("::", 2);
-            if (parts.length < 2) return null;
+        return call(resolveFunction(path), args == null ? new Object[0] : args.toArray());
+    }
 
-            String fileName = parts[0];
-            String funcName = parts[1];
+    /**
+     * 把 "脚本文件::函数名" 解析为函数句柄
+     * 脚本文件尚未加载时在这里加载，同一路径的句柄在脚本重新执行前复用，调用时不再访问文件系统
+     * @return 句柄，未找到函数时 {@link FunctionHandle#isResolved()} 为 false
+     */
+    public FunctionHandle resolveFunction(String path) {
+        synchronized (functionHandles) {
+            FunctionHandle handle = functionHandles.get(path);
+            if (handle != null && handle.isBoundTo(this)) return handle;
 
-            // 确保脚本已加载
-            File scriptFile = new File(scriptsDir, fileName);
-            if (scriptFile.exists() && !loadedScripts.containsKey(scriptFile.getPath())) {
-                String content = Files.readString(scriptFile.toPath(), StandardCharsets.UTF_8);
-                evalScript(content);
-                loadedScripts.put(scriptFile.getPath(), content);
+            Function function = null;
+            boolean pure = false;
+            String[] parts = path.split("::", 2);
+            if (parts.length == 2 && scope != null) {
+                String fileName = parts[0];
+                String funcName = parts[1];
+                try {
+                    // 确保脚本已加载
+                    File scriptFile = new File(scriptsDir, fileName);
+                    if (scriptFile.exists() && !loadedScripts.containsKey(scriptFile.getPath())) {
+                        String content = Files.readString(scriptFile.toPath(), StandardCharsets.UTF_8);
+                        evalScript(content);
+                        loadedScripts.put(scriptFile.getPath(), content);
+                    }
+                    Object fnObj = scope.get(funcName, scope);
+                    if (fnObj instanceof Function) {
+                        function = (Function) fnObj;
+                        synchronized (pureFunctions) {
+                            pure = pureFunctions.contains(funcName);
+                        }
+                    } else {
+                        plugin.getLogger().warning("未找到函数: " + funcName + " 于脚本 " + fileName);
+                    }
+                } catch (Exception e) {
+                    plugin.getLogger().error("解析JS函数失败: " + path + " - " + e.getMessage());
+                }
             }
+            // 加载脚本会使旧句柄失效，新句柄取加载之后的版本
+            handle = new FunctionHandle(this, generation, path, function, pure);
+            functionHandles.put(path, handle);
+            return handle;
+        }
+    }
 
-            Object fnObj = scope.get(funcName, scope);
-            if (fnObj instanceof Function) {
-                Function fn = (Function) fnObj;
-                Object[] jsArgs = args == null ? new Object[0] : args.toArray();
-                return fn.call(rhinoContext, scope, scope, jsArgs);
-            } else {
-                plugin.getLogger().warning("未找到函数: " + funcName + " 于脚本 " + fileName);
-                return null;
+    /**
+     * 调用已解析的函数
+     * @param args 参数，不会被修改，可在多次调用间复用
+     * @return 执行结果，未找到函数或执行失败返回 null
+     */
+    public Object call(FunctionHandle handle, Object[] args) {
+        return call(handle, args, false);
+    }
+
+    /**
+     * 调用已解析的函数
+     * 函数带 @Pure 注解或 pure 为 true 时，返回值按 (脚本路径, 参数) 缓存，
+     * 只缓存字符串、数字、布尔这类不可变结果
+     * 脚本可以给 arguments[i] 赋值，传给函数的是参数数组的副本，调用方复用的数组和缓存键不受影响
+     * @param pure 调用方声明该函数的结果只取决于参数
+     */
+    public Object call(FunctionHandle handle, Object[] args, boolean pure) {
+        if (handle == null || handle.function == null) return null;
+        PureKey key = null;
+        if (pure || handle.pure) {
+            key = new PureKey(handle.getPath(), args);
+            synchronized (pureCache) {
+                Object cached = pureCache.get(key);
+                if (cached != null) {
+                    pureCacheHits++;
+                    return cached;
+                }
+                pureCacheMisses++;
             }
+        }
+        Object result;
+        try {
+            result = handle.function.call(rhinoContext, scope, scope, args.clone());
         } catch (Exception e) {
             plugin.getLogger().error("调用JS节点失败: " + e.getMessage());
             e.printStackTrace();
             return null;
         }
+        if (key != null) {
+            if (result instanceof CharSequence) result = result.toString();
+            if (result instanceof String || result instanceof Number || result instanceof Boolean) {
+                synchronized (pureCache) {
+                    // 句柄已失效时结果可能来自旧版本的函数，不写入缓存
+                    if (handle.isBoundTo(this)) pureCache.put(key, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    int getGeneration() {
+        return generation;
     }
 
     /**
@@ -214,6 +412,11 @@ public class ItemsScriptEngineManager {
             List<EventInfo> eventInfos = extractEventInfo(scriptContent);
 
             for (EventInfo eventInfo : eventInfos) {
+                if (isReplacedByNativeRenderer(scriptPath, eventInfo)) {
+                    plugin.getLogger().info("内置动态Lore渲染器已启用，跳过 " + DYNAMIC_LORE_SCRIPT + " 的 "
+                            + eventInfo.methodName + " (设置 native-dynamic-lore: false 改用脚本渲染)");
+                    continue;
+                }
                 try {
                     // 获取事件类
                     Class<?> eventClass = Class.forName(eventInfo.eventName);
@@ -258,6 +461,17 @@ public class ItemsScriptEngineManager {
         }
     }
 
+    /**
+     * 内置动态Lore渲染器启用时，DynamicLore.js 的数据包发送监听由内置渲染器取代
+     * 升级前保存的旧版脚本不会被覆盖，也不检查内置渲染器，照常注册会对同一数据包再渲染一遍
+     */
+    private boolean isReplacedByNativeRenderer(String scriptPath, EventInfo eventInfo) {
+        if (!DYNAMIC_LORE_SCRIPT.equals(new File(scriptPath).getName())) return false;
+        if (!DataPacketSendEvent.class.getName().equals(eventInfo.eventName)) return false;
+        DynamicLoreRenderer renderer = plugin.getDynamicLoreRenderer();
+        return renderer != null && renderer.isEnabled();
+    }
+
     /**
      * 提取事件信息
      * 格式: // @Event(eventName = "cn.nukkit.event.EventClass", priority="NORMAL", ignoreCancelled=false)
@@ -357,6 +571,17 @@ public class ItemsScriptEngineManager {
         rhinoContext = null;
         scope = null;
         loadedScripts.clear();
+        synchronized (expressionCache) {
+            expressionCache.clear();
+        }
+        synchronized (functionHandles) {
+            functionHandles.clear();
+        }
+        synchronized (pureFunctions) {
+            pureFunctions.clear();
+        }
+        clearPureCache();
+        generation++;
 
         plugin.getLogger().info("脚本引擎已卸载");
     }
@@ -374,6 +599,75 @@ public class ItemsScriptEngineManager {
         return plugin;
     }
 
+    /**
+     * 编译后的表达式
+     * 优先编译为函数 function(__p0, ...) { return (expr); }，
+     * 若表达式包含多条语句则编译为脚本，参数写入每次调用时新建的子作用域
+     */
+    static class CompiledExpression {
+        final String[] paramNames;
+        private final Function function;
+        private final Script script;
+
+        private CompiledExpression(String[] paramNames, Function function, Script script) {
+            this.paramNames = paramNames;
+            this.function = function;
+            this.script = script;
+        }
+
+        static CompiledExpression compile(Context cx, Scriptable scope, String jsExpr, int paramCount) {
+            String[] names = new String[paramCount];
+            for (int i = 0; i < paramCount; i++) names[i] = "__p" + i;
+            String source = "function(" + String.join(", ", names) + ") {\nreturn (" + jsExpr + "\n);\n}";
+            try {
+                return new CompiledExpression(names, cx.compileFunction(scope, source, "expr", 1, null), null);
+            } catch (EvaluatorException e) {
+                return new CompiledExpression(names, null, cx.compileString(jsExpr, "expr", 1, null));
+            }
+        }
+
+        Object call(Context cx, Scriptable scope, Object[] args) {
+            if (function != null) {
+                return function.call(cx, scope, scope, args);
+            }
+            Scriptable local = cx.newObject(scope);
+            local.setPrototype(scope);
+            local.setParentScope(null);
+            for (int i = 0; i < paramNames.length; i++) {
+                ScriptableObject.putProperty(local, paramNames[i], args[i]);
+            }
+            return script.exec(cx, local);
+        }
+    }
+
+    /**
+     * 纯函数结果缓存的键，脚本拿到的是参数数组的副本，这里直接引用
+     */
+    private static final class PureKey {
+        private final String path;
+        private final Object[] args;
+        private final int hash;
+
+        PureKey(String path, Object[] args) {
+            this.path = path;
+            this.args = args;
+            this.hash = 31 * path.hashCode() + Arrays.hashCode(args);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof PureKey)) return false;
+            PureKey other = (PureKey) o;
+            return hash == other.hash && path.equals(other.path) && Arrays.equals(args, other.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
     /**
      * 事件信息类
      */
@@ -18,6 +18,7 @@ var CONFIG_FILE = "display_rules.yml";  // 配置文件名
 // 显示规则缓存（从YAML加载）
 var displayRules = null;
 var displayOrder = null;  // 显示顺序配置
+var displayRulesVersion = -1;  // 已加载规则对应的版本号
 
 // 默认显示顺序
 var DEFAULT_DISPLAY_ORDER = ["attributes", "enchantments", "level", "bound"];
@@ -124,6 +125,16 @@ function loadDisplayRules() {
     }
 }
 
+/**
+ * 当前显示规则的版本号
+ * 插件在 display_rules.yml 内容变化 (重载或文件被修改) 时递增
+ */
+function currentRulesVersion() {
+    var renderer = plugin.getDynamicLoreRenderer();
+    var compiled = renderer != null ? renderer.getRules() : null;
+    return compiled != null ? compiled.getVersion() : -1;
+}
+
 /**
  * 转换Config值为JS对象
  */
@@ -458,11 +469,15 @@ function renderDynamicLore(nbtData) {
         print("[DynamicLore] 找到 YRAttributes: " + JSON.stringify(nbtData.YRAttributes));
     }
 
-    // 确保规则已加载（每次都重新加载以支持热更新）
-    if (DEBUG_MODE) {
-        print("[DynamicLore] 重新加载显示规则...");
+    // 只在配置文件内容变化 (版本号变化) 时重新加载规则
+    var version = currentRulesVersion();
+    if (!displayRules || version != displayRulesVersion) {
+        if (DEBUG_MODE) {
+            print("[DynamicLore] 重新加载显示规则...");
+        }
+        displayRules = loadDisplayRules();
+        displayRulesVersion = version;
     }
-    displayRules = loadDisplayRules();
     if (!displayRules) {
         print("[DynamicLore] 无法加载显示规则！");
         return null;
@@ -600,6 +615,12 @@ function processItem(item) {
  */
 // @Event(eventName = "cn.nukkit.event.server.DataPacketSendEvent", priority="HIGH")
 function onDataPacketSend(event) {
+    // 插件内置的渲染器已启用时由它负责渲染 (主配置 native-dynamic-lore)
+    var nativeRenderer = plugin.getDynamicLoreRenderer();
+    if (nativeRenderer != null && nativeRenderer.isEnabled()) {
+        return;
+    }
+
     if (!DYNAMIC_LORE_ENABLED) {
         if (DEBUG_MODE) {
             print("[DynamicLore] 动态Lore已禁用");
@@ -682,4 +703,5 @@ if (typeof SCRIPT_INITIALIZED === 'undefined') {
 
     // 立即加载显示规则
     displayRules = loadDisplayRules();
+    displayRulesVersion = currentRulesVersion();
 }
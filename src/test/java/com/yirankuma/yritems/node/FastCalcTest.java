@@ -0,0 +1,116 @@
+package com.yirankuma.yritems.node;
+
+import org.junit.jupiter.api.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Scriptable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * FastCalc.compileScript 编译的 CALCULATION 公式必须与 Rhino 执行同一公式的结果逐位一致 (包括 -0 和 NaN)
+ */
+class FastCalcTest {
+
+    private static final String[] FORMULAS = {
+            "<a> + <b> * 2",
+            "(<a> - <b>) / 3",
+            "<a> / <b>",
+            "<a> % <b>",
+            "-<a> + +<b>",
+            "1e3 * <a> - .5",
+            "Math.PI * <a> * <a> + Math.E",
+            "Math.pow(<a>, <b>)",
+            "Math.pow(<a>, 2) + Math.pow(2, <b>)",
+            "Math.round(<a>) - Math.round(<b> * 1.5)",
+            "Math.floor(<a>) + Math.ceil(<b>)",
+            "Math.sqrt(Math.abs(<a>)) * Math.abs(<b>)",
+            "Math.max(<a>, <b>, 0)",
+            "Math.min(<a>, <b>)",
+            "<a> > <b> ? <a> : <b>",
+            "<a> === 0 ? 1 : <b> !== 0 ? <b> : -1",
+            "<a> == <b> ? 10 : 20",
+            "<a> && <b>",
+            "<a> || <b>",
+            "!<a> + <b>",
+            "(<a> >= <b>) * 10 + (<a> < 0)",
+            "<a> * (1 + <b> / 100) - <a> % 7"
+    };
+
+    private static final double[] VALUES = {
+            0.0, -0.0, 1, -1, 0.5, -0.5, 1.5, -2.5, 3.7, -4.49999999999999, 7, 100, -250.75,
+            1e-9, 123456.789, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY
+    };
+
+    @Test
+    void compiledFormulasMatchRhino() {
+        Map<String, Integer> slots = new HashMap<>();
+        slots.put("a", 0);
+        slots.put("b", 1);
+        Context cx = Context.enter();
+        try {
+            Scriptable scope = cx.initSafeStandardObjects();
+            for (String formula : FORMULAS) {
+                FastCalc.Formula compiled = FastCalc.compileScript(formula, slots);
+                Function function = cx.compileFunction(scope,
+                        "function(a, b) { return (" + formula.replace("<a>", "a").replace("<b>", "b") + "); }",
+                        "formula", 1, null);
+                for (double a : VALUES) {
+                    for (double b : VALUES) {
+                        Object ret = function.call(cx, scope, scope, new Object[]{a, b});
+                        double expected = Context.toNumber(ret);
+                        assertEquals(expected, compiled.eval(new double[]{a, b}, null),
+                                () -> formula + " a=" + a + " b=" + b);
+                    }
+                }
+            }
+        } finally {
+            Context.exit();
+        }
+    }
+
+    @Test
+    void powOfOneToInfinityIsNaN() {
+        Map<String, Integer> slots = new HashMap<>();
+        slots.put("a", 0);
+        slots.put("b", 1);
+        FastCalc.Formula script = FastCalc.compileScript("Math.pow(<a>, <b>)", slots);
+        FastCalc.Formula fast = FastCalc.compile("<a> ^ <b>", slots);
+        for (double a : new double[]{1, -1}) {
+            for (double b : new double[]{Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY}) {
+                assertEquals(Double.NaN, script.eval(new double[]{a, b}, null));
+                assertEquals(Double.NaN, fast.eval(new double[]{a, b}, null));
+            }
+        }
+        assertEquals(1.0, FastCalc.eval("pow(1, 1e308)"));
+    }
+
+    @Test
+    void roundDoesNotSaturateOutsideLongRange() {
+        // 超出 long 范围的 double 都是整数，Math.round 原样返回 (Rhino 1.7.14 会饱和到 ±2^63，与规范不符)
+        Map<String, Integer> slots = new HashMap<>();
+        slots.put("a", 0);
+        FastCalc.Formula round = FastCalc.compileScript("Math.round(<a>)", slots);
+        for (double v : new double[]{0x1p63, 1e19, 1e20, 1.7976931348623157e308}) {
+            assertEquals(v, round.eval(new double[]{v}, null));
+            assertEquals(-v, round.eval(new double[]{-v}, null));
+        }
+        assertEquals(4503599627370496.0, round.eval(new double[]{4503599627370495.5}, null));
+        assertEquals(-0.0, round.eval(new double[]{-0.5}, null));
+        assertEquals(0.0, round.eval(new double[]{0.49999999999999994}, null));
+    }
+
+    @Test
+    void rejectsFormulasOutsideScriptSubset() {
+        Map<String, Integer> slots = new HashMap<>();
+        slots.put("a", 0);
+        String[] formulas = {"<a> ^ 2", "pow(<a>, 2)", "Math.clamp(<a>, 0, 1)", "<a>++", "010 + <a>", "'x' + <a>", "<c> + 1"};
+        for (String formula : formulas) {
+            assertThrows(IllegalArgumentException.class, () -> FastCalc.compileScript(formula, slots), formula);
+        }
+    }
+}
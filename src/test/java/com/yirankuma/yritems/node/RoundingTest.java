@@ -0,0 +1,120 @@
+package com.yirankuma.yritems.node;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Rounding.apply 必须与 BigDecimal.valueOf(v).setScale(fixed, mode).doubleValue() 逐位一致
+ * (包括 -0.0 与 0.0 的区别)，覆盖所有取整模式和 0~20 位小数
+ */
+class RoundingTest {
+    private static final int MAX_SCALE = 20;
+
+    @Test
+    void randomValuesMatchBigDecimal() {
+        Random random = new Random(20240611L);
+        for (int i = 0; i < 20000; i++) {
+            // 数量级从 1e-8 到 1e18
+            double v = random.nextDouble() * Math.pow(10, random.nextInt(27) - 8);
+            if (random.nextBoolean()) v = -v;
+            assertAllModes(v);
+        }
+    }
+
+    @Test
+    void shortDecimalsMatchBigDecimal() {
+        // 配置和公式中常见的短小数，大多不能被 double 精确表示
+        Random random = new Random(7L);
+        for (int i = 0; i < 20000; i++) {
+            int digits = random.nextInt(8);
+            long unscaled = random.nextInt(2000000) - 1000000;
+            assertAllModes(BigDecimal.valueOf(unscaled, digits).doubleValue());
+        }
+    }
+
+    @Test
+    void tiesMatchBigDecimal() {
+        // 在各个小数位上恰好位于两个候选值中间的值，以及十进制写法是中点但 double 不是的值
+        double[] values = {
+                0.5, 1.5, 2.5, -0.5, -1.5, -2.5, 0.25, 0.125, -0.375, 1.0625,
+                0.05, 0.15, 0.35, 1.005, 2.675, 1.115, -1.005, -2.675,
+                0.045, 0.0005, 123.4565, 99.995, -99.995, 1e-7 + 0.5, 4503599627370495.5
+        };
+        for (double v : values) {
+            assertAllModes(v);
+        }
+        for (int scale = 0; scale <= 10; scale++) {
+            for (long n = -200; n <= 200; n++) {
+                assertAllModes(BigDecimal.valueOf(2 * n + 1, scale + 1).multiply(BigDecimal.valueOf(5)).doubleValue());
+            }
+        }
+    }
+
+    @Test
+    void zeroAndNegativeZero() {
+        assertAllModes(0.0);
+        assertAllModes(-0.0);
+        // 负数取整为 0 时 BigDecimal 得到 +0.0
+        assertAllModes(-0.001);
+        assertAllModes(-0.4);
+        assertAllModes(-1e-300);
+        assertAllModes(Double.MIN_VALUE);
+        assertAllModes(-Double.MIN_VALUE);
+    }
+
+    @Test
+    void largeMagnitudesMatchBigDecimal() {
+        double[] values = {
+                999999999999999.4, 1e15, 1e15 + 0.5, 9007199254740991.0, 9007199254740993.0,
+                1e16, 123456789012345678.0, 9.2e18, 9.3e18, Long.MAX_VALUE, 1e21, 1e22, 1e23,
+                1e100, 1.7976931348623157e308, Double.MAX_VALUE, 4.9e-324
+        };
+        for (double v : values) {
+            assertAllModes(v);
+            assertAllModes(-v);
+        }
+    }
+
+    @Test
+    void unnecessaryThrowsLikeBigDecimal() {
+        Rounding rounding = Rounding.of(1, "UNNECESSARY");
+        assertEquals(1.5, rounding.apply(1.5));
+        assertThrows(ArithmeticException.class, () -> rounding.apply(1.25));
+    }
+
+    @Test
+    void unknownModeFallsBackToHalfUp() {
+        assertEquals(2.0, Rounding.of(0, "NOT_A_MODE").apply(1.5));
+        assertEquals(-2.0, Rounding.of(0, "NOT_A_MODE").apply(-1.5));
+        // 负的小数位数按 0 处理
+        assertEquals(3.0, Rounding.of(-2, "HALF_UP").apply(2.5));
+    }
+
+    private static void assertAllModes(double v) {
+        for (RoundingMode mode : RoundingMode.values()) {
+            for (int scale = 0; scale <= MAX_SCALE; scale++) {
+                assertMatches(v, scale, mode);
+            }
+        }
+    }
+
+    private static void assertMatches(double v, int scale, RoundingMode mode) {
+        Rounding rounding = Rounding.of(scale, mode.name());
+        double expected;
+        try {
+            expected = BigDecimal.valueOf(v).setScale(scale, mode).doubleValue();
+        } catch (ArithmeticException e) {
+            // 只有 UNNECESSARY 会抛出
+            assertThrows(ArithmeticException.class, () -> rounding.apply(v),
+                    () -> "v=" + v + " scale=" + scale + " mode=" + mode);
+            return;
+        }
+        assertEquals(expected, rounding.apply(v), () -> "v=" + v + " scale=" + scale + " mode=" + mode);
+    }
+}